@@ -0,0 +1,65 @@
+package net.darkhax.curseforgegradle.benchmark;
+
+import net.darkhax.curseforgegradle.Constants;
+import net.darkhax.curseforgegradle.api.metadata.Metadata;
+import net.darkhax.curseforgegradle.api.metadata.ProjectRelations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of serializing upload metadata with the shared Gson instances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MetadataSerializationBenchmark {
+
+    /**
+     * Metadata for a typical parent file.
+     */
+    private Metadata metadata;
+
+    @Setup
+    public void setup() {
+
+        this.metadata = new Metadata();
+        this.metadata.changelog = "Fixed a crash when opening the config screen.\nUpdated translations.";
+        this.metadata.changelogType = Constants.CHANGELOG_MARKDOWN;
+        this.metadata.releaseType = Constants.RELEASE_TYPE_RELEASE;
+        this.metadata.gameVersions.add("1.21.1");
+        this.metadata.gameVersions.add("NeoForge");
+        this.metadata.gameVersions.add("Java 21");
+        this.metadata.gameVersions.add("Client");
+        this.metadata.gameVersions.add("Server");
+
+        final ProjectRelations relations = new ProjectRelations();
+        relations.addRelationship("bookshelf", Constants.RELATION_REQUIRED);
+        relations.addRelationship("jei", Constants.RELATION_OPTIONAL);
+        this.metadata.relations = relations;
+    }
+
+    @Benchmark
+    public String serialize() {
+
+        return Constants.GSON.toJson(this.metadata);
+    }
+
+    @Benchmark
+    public String serializePretty() {
+
+        return Constants.PRETTY_GSON.toJson(this.metadata);
+    }
+
+    @Benchmark
+    public String serializeRelations() {
+
+        return Constants.GSON.toJson(this.metadata.relations);
+    }
+}
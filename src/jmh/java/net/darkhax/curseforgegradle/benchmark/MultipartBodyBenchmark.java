@@ -0,0 +1,124 @@
+package net.darkhax.curseforgegradle.benchmark;
+
+import net.darkhax.curseforgegradle.MultipartBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building a multipart upload body and streaming it the same way the HTTP client does. Run with
+ * the gc profiler to see the allocation rate for each file size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultipartBodyBenchmark {
+
+    /**
+     * The size of the artifact in megabytes.
+     */
+    @Param({"1", "100", "1024"})
+    public int sizeMb;
+
+    /**
+     * The metadata sent with the artifact.
+     */
+    private String metadataJson;
+
+    /**
+     * The artifact being uploaded.
+     */
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        this.metadataJson = "{\"changelog\":\"Benchmark\",\"changelogType\":\"text\",\"gameVersionNames\":[\"1.21.1\"],\"releaseType\":\"alpha\"}";
+        this.file = Files.createTempFile("cfg-benchmark", ".jar");
+
+        final byte[] chunk = new byte[1024 * 1024];
+
+        try (OutputStream output = Files.newOutputStream(this.file)) {
+
+            for (int i = 0; i < this.sizeMb; i++) {
+
+                ThreadLocalRandom.current().nextBytes(chunk);
+                output.write(chunk);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        Files.deleteIfExists(this.file);
+    }
+
+    @Benchmark
+    public long streamBody() throws Exception {
+
+        final MultipartBody body = new MultipartBody(this.metadataJson, this.file);
+        return drain(body.publisher());
+    }
+
+    /**
+     * Subscribes to a body publisher and consumes every chunk, returning the number of bytes that were published.
+     *
+     * @param publisher The publisher to drain.
+     * @return The number of bytes published.
+     * @throws Exception If the publisher failed.
+     */
+    static long drain(HttpRequest.BodyPublisher publisher) throws Exception {
+
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+
+            private long bytes;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+
+                this.bytes += item.remaining();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+
+                result.complete(this.bytes);
+            }
+        });
+
+        return result.get();
+    }
+}
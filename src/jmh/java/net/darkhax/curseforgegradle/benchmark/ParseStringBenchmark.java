@@ -0,0 +1,114 @@
+package net.darkhax.curseforgegradle.benchmark;
+
+import groovy.lang.Closure;
+import net.darkhax.curseforgegradle.TaskPublishCurseForge;
+import org.gradle.api.file.RegularFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of resolving the different value types accepted by {@link TaskPublishCurseForge#parseString}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseStringBenchmark {
+
+    /**
+     * A changelog file on disk.
+     */
+    private File file;
+
+    /**
+     * A closure that returns a string.
+     */
+    private Closure<String> closure;
+
+    /**
+     * A closure that returns a file.
+     */
+    private Closure<File> fileClosure;
+
+    /**
+     * A Gradle regular file.
+     */
+    private RegularFile regularFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        this.file = File.createTempFile("cfg-changelog", ".md");
+        Files.writeString(this.file.toPath(), "- Fixed a crash when opening the config screen.\n".repeat(200), StandardCharsets.UTF_8);
+
+        this.closure = new Closure<String>(this) {
+
+            @Override
+            public String call() {
+
+                return "Fixed a crash when opening the config screen.";
+            }
+        };
+
+        final File changelog = this.file;
+
+        this.fileClosure = new Closure<File>(this) {
+
+            @Override
+            public File call() {
+
+                return changelog;
+            }
+        };
+
+        this.regularFile = () -> changelog;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        this.file.delete();
+    }
+
+    @Benchmark
+    public String string() {
+
+        return TaskPublishCurseForge.parseString("Fixed a crash when opening the config screen.");
+    }
+
+    @Benchmark
+    public String closure() {
+
+        return TaskPublishCurseForge.parseString(this.closure);
+    }
+
+    @Benchmark
+    public String file() {
+
+        return TaskPublishCurseForge.parseString(this.file);
+    }
+
+    @Benchmark
+    public String fileClosure() {
+
+        return TaskPublishCurseForge.parseString(this.fileClosure);
+    }
+
+    @Benchmark
+    public String regularFile() {
+
+        return TaskPublishCurseForge.parseString(this.regularFile);
+    }
+}
@@ -0,0 +1,211 @@
+package net.darkhax.curseforgegradle;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Recompresses ZIP based archives, such as jars and modpacks, with the highest deflate level before they are uploaded.
+ * Only the compression of each entry changes. The names, order, contents, and timestamps of the entries are kept, so
+ * the archive behaves exactly like the original, and jar signatures remain valid. Entries that were stored without
+ * compression are kept that way, as some loaders rely on reading them directly.
+ */
+final class ArchiveRecompressor {
+
+    /**
+     * The signature at the start of a ZIP file that has at least one entry.
+     */
+    private static final int ZIP_SIGNATURE = 0x504B0304;
+
+    /**
+     * The size of the buffer used to write the recompressed archive.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ArchiveRecompressor() {
+
+    }
+
+    /**
+     * Recompresses an archive into a directory. The recompressed archive has the same name as the original, so it is
+     * published under the same file name.
+     *
+     * @param source          The archive to recompress.
+     * @param outputDirectory The directory to write the recompressed archive to.
+     * @return The result of the recompression. The recompressed file is only returned if it is smaller than the
+     * original.
+     * @throws IOException If the archive could not be read or written.
+     */
+    static Result recompress(File source, Path outputDirectory) throws IOException {
+
+        final long start = System.nanoTime();
+        final long originalSize = source.length();
+
+        if (!isZip(source)) {
+
+            return new Result(source, null, originalSize, originalSize, System.nanoTime() - start);
+        }
+
+        final Path target = outputDirectory.resolve(source.getName());
+
+        try (ZipFile zip = new ZipFile(source); ZipOutputStream output = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(target), BUFFER_SIZE))) {
+
+            output.setLevel(Deflater.BEST_COMPRESSION);
+
+            if (zip.getComment() != null) {
+
+                output.setComment(zip.getComment());
+            }
+
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+
+            while (entries.hasMoreElements()) {
+
+                final ZipEntry entry = entries.nextElement();
+                final ZipEntry copy = new ZipEntry(entry);
+
+                // The compressed size is only known once the entry has been written again.
+                if (copy.getMethod() != ZipEntry.STORED) {
+
+                    copy.setCompressedSize(-1);
+                }
+
+                output.putNextEntry(copy);
+
+                try (InputStream input = zip.getInputStream(entry)) {
+
+                    input.transferTo(output);
+                }
+
+                output.closeEntry();
+            }
+        }
+
+        final long size = Files.size(target);
+
+        if (size >= originalSize) {
+
+            Files.delete(target);
+            return new Result(source, null, originalSize, originalSize, System.nanoTime() - start);
+        }
+
+        return new Result(source, target.toFile(), originalSize, size, System.nanoTime() - start);
+    }
+
+    /**
+     * Checks if a file is a ZIP archive by reading its signature.
+     *
+     * @param file The file to check.
+     * @return True if the file is a ZIP archive with at least one entry.
+     * @throws IOException If the file could not be read.
+     */
+    private static boolean isZip(File file) throws IOException {
+
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+
+            final byte[] header = input.readNBytes(4);
+            return header.length == 4 && ((header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8 | (header[3] & 0xFF)) == ZIP_SIGNATURE;
+        }
+    }
+
+    /**
+     * The result of recompressing an archive.
+     */
+    static final class Result {
+
+        /**
+         * The original archive.
+         */
+        private final File source;
+
+        /**
+         * The recompressed archive, or null if the original should be uploaded.
+         */
+        @Nullable
+        private final File file;
+
+        /**
+         * The size of the original archive.
+         */
+        private final long originalSize;
+
+        /**
+         * The size of the archive that will be uploaded.
+         */
+        private final long size;
+
+        /**
+         * The time spent recompressing the archive, in nanoseconds.
+         */
+        private final long nanos;
+
+        private Result(File source, @Nullable File file, long originalSize, long size, long nanos) {
+
+            this.source = source;
+            this.file = file;
+            this.originalSize = originalSize;
+            this.size = size;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Gets the original archive.
+         *
+         * @return The original archive.
+         */
+        File getSource() {
+
+            return this.source;
+        }
+
+        /**
+         * Gets the recompressed archive.
+         *
+         * @return The recompressed archive, or null if it was not smaller than the original.
+         */
+        @Nullable
+        File getFile() {
+
+            return this.file;
+        }
+
+        /**
+         * Gets the size of the original archive.
+         *
+         * @return The original size in bytes.
+         */
+        long getOriginalSize() {
+
+            return this.originalSize;
+        }
+
+        /**
+         * Gets the size of the archive that will be uploaded.
+         *
+         * @return The size in bytes.
+         */
+        long getSize() {
+
+            return this.size;
+        }
+
+        /**
+         * Gets the time spent recompressing the archive.
+         *
+         * @return The time in nanoseconds.
+         */
+        long getNanos() {
+
+            return this.nanos;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package net.darkhax.curseforgegradle;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that limits the rate at which upload bodies are sent. One limiter is owned by the
+ * {@link CurseForgeUploadService} and shared by every upload in the build, so the limit applies to the combined rate
+ * of all concurrent uploads. The bucket holds up to one second of tokens, which allows short bursts while keeping the
+ * average rate at the limit.
+ */
+public final class BandwidthLimiter {
+
+    /**
+     * The maximum number of bytes per second.
+     */
+    private final long bytesPerSecond;
+
+    /**
+     * The number of bytes that can be sent before the limit applies. Sending a chunk may take this below zero, in which
+     * case the sender waits until the debt has been repaid.
+     */
+    private long tokens;
+
+    /**
+     * The last time tokens were added to the bucket.
+     */
+    private long lastRefillNanos = System.nanoTime();
+
+    /**
+     * Creates a new bandwidth limiter.
+     *
+     * @param bytesPerSecond The maximum number of bytes per second. This must be greater than 0.
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+    }
+
+    /**
+     * Gets the maximum number of bytes per second.
+     *
+     * @return The bandwidth limit.
+     */
+    public long getBytesPerSecond() {
+
+        return this.bytesPerSecond;
+    }
+
+    /**
+     * Takes tokens for a number of bytes from the bucket. Taking more tokens than are available puts the bucket into
+     * debt, which is repaid before more data is requested.
+     *
+     * @param bytes The number of bytes that are being sent.
+     */
+    private synchronized void take(long bytes) {
+
+        this.refill();
+        this.tokens -= bytes;
+    }
+
+    /**
+     * Calculates how long a sender must wait before it may request more data.
+     *
+     * @return The number of nanoseconds until the bucket is out of debt, or 0 if data may be requested now.
+     */
+    private synchronized long getWaitNanos() {
+
+        this.refill();
+        return this.tokens >= 0 ? 0 : -this.tokens * TimeUnit.SECONDS.toNanos(1) / this.bytesPerSecond;
+    }
+
+    /**
+     * Adds the tokens earned since the last refill to the bucket.
+     */
+    private void refill() {
+
+        final long now = System.nanoTime();
+        final long elapsed = now - this.lastRefillNanos;
+
+        if (elapsed > 0) {
+
+            final long refill = elapsed >= TimeUnit.SECONDS.toNanos(1) ? this.bytesPerSecond : elapsed * this.bytesPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = Math.min(this.bytesPerSecond, this.tokens + refill);
+            this.lastRefillNanos = now;
+        }
+    }
+
+    /**
+     * Wraps a body publisher so that its chunks are sent no faster than the limit allows. The limit is applied through
+     * demand rather than by blocking. Chunks are requested from the wrapped publisher one at a time, and once the
+     * bucket is in debt the next request is scheduled for when the debt has been repaid. No thread is blocked while
+     * waiting, including the threads of the HTTP client that deliver the chunks.
+     *
+     * @param delegate The publisher to throttle.
+     * @return A throttled publisher.
+     */
+    public HttpRequest.BodyPublisher throttle(HttpRequest.BodyPublisher delegate) {
+
+        return new HttpRequest.BodyPublisher() {
+
+            @Override
+            public long contentLength() {
+
+                return delegate.contentLength();
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+
+                delegate.subscribe(new ThrottledSubscriber(subscriber));
+            }
+        };
+    }
+
+    /**
+     * Passes chunks from a publisher to a subscriber, only requesting the next chunk once the limit allows it.
+     */
+    private final class ThrottledSubscriber implements Flow.Subscriber<ByteBuffer>, Flow.Subscription {
+
+        /**
+         * The subscriber that receives the throttled chunks.
+         */
+        private final Flow.Subscriber<? super ByteBuffer> downstream;
+
+        /**
+         * The number of chunks the downstream subscriber has asked for and not yet received.
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * Counts the requests to run the drain loop, so that only one thread runs it at a time and it never recurses
+         * when the upstream publisher sends a chunk from inside a call to request.
+         */
+        private final AtomicInteger drains = new AtomicInteger();
+
+        /**
+         * The subscription to the wrapped publisher.
+         */
+        private volatile Flow.Subscription upstream;
+
+        /**
+         * Whether a chunk has been requested from the wrapped publisher and not yet received.
+         */
+        private volatile boolean requested;
+
+        /**
+         * Whether the next request has been scheduled for when the bucket is out of debt.
+         */
+        private volatile boolean scheduled;
+
+        /**
+         * Whether the downstream subscriber has cancelled, or the wrapped publisher has finished.
+         */
+        private volatile boolean done;
+
+        /**
+         * Creates a new throttled subscriber.
+         *
+         * @param downstream The subscriber that receives the throttled chunks.
+         */
+        private ThrottledSubscriber(Flow.Subscriber<? super ByteBuffer> downstream) {
+
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+
+            this.upstream = subscription;
+            this.downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+
+            take(item.remaining());
+            this.demand.decrementAndGet();
+            this.downstream.onNext(item);
+
+            // The next chunk is only requested once this one has been delivered, so chunks are always passed on one
+            // at a time.
+            this.requested = false;
+            this.drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+
+            this.done = true;
+            this.downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+
+            this.done = true;
+            this.downstream.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+
+            // Invalid requests are passed on, so the wrapped publisher reports them as the Flow specification requires.
+            if (n <= 0) {
+
+                this.upstream.request(n);
+                return;
+            }
+
+            this.demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            this.drain();
+        }
+
+        @Override
+        public void cancel() {
+
+            this.done = true;
+            this.upstream.cancel();
+        }
+
+        /**
+         * Requests the next chunk from the wrapped publisher if one is wanted and the limit allows it, or schedules the
+         * request for when the limit will allow it.
+         */
+        private void drain() {
+
+            if (this.drains.getAndIncrement() != 0) {
+
+                return;
+            }
+
+            do {
+
+                if (!this.done && !this.requested && !this.scheduled && this.demand.get() > 0) {
+
+                    final long waitNanos = getWaitNanos();
+
+                    if (waitNanos > 0) {
+
+                        this.scheduled = true;
+                        CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+
+                            this.scheduled = false;
+                            this.drain();
+                        });
+                    }
+
+                    else {
+
+                        this.requested = true;
+                        this.upstream.request(1);
+                    }
+                }
+            }
+            while (this.drains.decrementAndGet() != 0);
+        }
+    }
+}
@@ -0,0 +1,691 @@
+package net.darkhax.curseforgegradle;
+
+import net.darkhax.curseforgegradle.api.upload.ResponseError;
+import net.darkhax.curseforgegradle.api.upload.ResponseSession;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Uploads a file as a series of fixed-size chunks using a resumable upload session. When a chunk fails, the server is
+ * asked how many bytes it has acknowledged and the upload resumes from there, so a dropped connection late in a large
+ * upload only resends the chunk that was in flight.
+ * <p>
+ * The session protocol is made up of three requests, all relative to the session target of the upload request.
+ * <ul>
+ *     <li>{@code POST <target>} starts a session. The body is the JSON metadata, and the X-Upload-Length and
+ *     X-Upload-File-Name headers describe the file. The server responds with the ID of the session.</li>
+ *     <li>{@code PUT <target>/<session>} sends a chunk of the file, described by a Content-Range header. The server
+ *     responds with the number of bytes it has acknowledged, and with the ID of the file once every byte has been
+ *     received.</li>
+ *     <li>{@code GET <target>/<session>} returns the same state without sending any data.</li>
+ * </ul>
+ * Servers that do not support sessions respond to the first request with 404, 405, or 501, in which case the caller
+ * falls back to a single multipart request.
+ */
+final class ChunkedUpload {
+
+    /**
+     * The request being uploaded.
+     */
+    private final UploadRequest request;
+
+    /**
+     * The context shared by uploads in the current execution.
+     */
+    private final UploadContext context;
+
+    /**
+     * The logger to report progress and errors to.
+     */
+    private final Logger log;
+
+    /**
+     * The metrics to record the upload in.
+     */
+    private final UploadMetrics metrics;
+
+    /**
+     * An optional tracker that reports progress to listeners.
+     */
+    @Nullable
+    private final ProgressTracker progress;
+
+    /**
+     * An optional digest to update with the contents of the file. Every byte is only added once, even when a chunk is
+     * sent again.
+     */
+    @Nullable
+    private final MessageDigest fileDigest;
+
+    /**
+     * The number of bytes from the start of the file that have been sent at least once. Only these bytes are added to
+     * the digest, and the server can not have received more than this.
+     */
+    private long sentBytes;
+
+    /**
+     * Whether the upload currently holds a slot in the build wide upload window.
+     */
+    private boolean holdingSlot;
+
+    /**
+     * Creates a new chunked upload.
+     *
+     * @param request    The request being uploaded.
+     * @param context    The context shared by uploads in the current execution.
+     * @param log        The logger to report progress and errors to.
+     * @param metrics    The metrics to record the upload in.
+     * @param progress   An optional tracker that reports progress to listeners.
+     * @param fileDigest An optional digest to update with the contents of the file.
+     */
+    ChunkedUpload(UploadRequest request, UploadContext context, Logger log, UploadMetrics metrics, @Nullable ProgressTracker progress, @Nullable MessageDigest fileDigest) {
+
+        this.request = request;
+        this.context = context;
+        this.log = log;
+        this.metrics = metrics;
+        this.progress = progress;
+        this.fileDigest = fileDigest;
+    }
+
+    /**
+     * Uploads the file in chunks. The caller must hold a slot in the build wide upload window, which is released once
+     * the upload has finished.
+     *
+     * @return The ID CurseForge assigned to the uploaded file, or null if the server does not support resumable
+     * uploads.
+     * @throws InterruptedException If the thread was interrupted while waiting to retry.
+     */
+    @Nullable
+    Long send() throws InterruptedException {
+
+        this.holdingSlot = true;
+
+        try {
+
+            return this.upload();
+        }
+
+        finally {
+
+            if (this.holdingSlot) {
+
+                this.holdingSlot = false;
+                this.context.releaseUploadSlot();
+            }
+        }
+    }
+
+    /**
+     * Starts a session and uploads every chunk of the file. A slot in the build wide upload window must be held.
+     *
+     * @return The ID CurseForge assigned to the uploaded file, or null if the server does not support resumable
+     * uploads.
+     * @throws InterruptedException If the thread was interrupted while waiting to retry.
+     */
+    @Nullable
+    private Long upload() throws InterruptedException {
+
+        final String sessionTarget = this.request.getSessionTarget();
+        final String sessionId = this.startSession(sessionTarget);
+
+        if (sessionId == null) {
+
+            return null;
+        }
+
+        final URI sessionUri = URI.create(sessionTarget + "/" + URLEncoder.encode(sessionId, StandardCharsets.UTF_8));
+        final long length = this.request.getFile().length();
+        final long chunkSize = this.context.getChunkSize();
+        final RetryPolicy retryPolicy = this.context.getRetryPolicy();
+        this.log.debug("Uploading {} in chunks of {} bytes using session {}.", this.request.getFile().getName(), chunkSize, sessionId);
+
+        if (this.fileDigest != null) {
+
+            this.fileDigest.reset();
+        }
+
+        if (this.progress != null) {
+
+            this.progress.setTotalBytes(length);
+            this.progress.onStart();
+        }
+
+        long offset = 0;
+        int attempt = 1;
+        int failures = 0;
+
+        try (FileChannel channel = FileChannel.open(this.request.getFile().toPath(), StandardOpenOption.READ)) {
+
+            while (true) {
+
+                final long chunkLength = Math.min(chunkSize, length - offset);
+                ResponseSession state = null;
+                String failure;
+                int statusCode = 0;
+                int errorCode = 0;
+                Optional<String> retryAfter = Optional.empty();
+
+                this.metrics.startAttempt(attempt);
+
+                try {
+
+                    final HttpResponse<InputStream> response = this.context.getClient().send(this.buildChunkRequest(sessionUri, channel, offset, chunkLength, length), HttpResponse.BodyHandlers.ofInputStream());
+                    this.metrics.endAttempt();
+                    statusCode = response.statusCode();
+
+                    try (InputStreamReader reader = new InputStreamReader(response.body(), StandardCharsets.UTF_8)) {
+
+                        if (statusCode == 200) {
+
+                            state = Constants.GSON.fromJson(reader, ResponseSession.class);
+                            failure = null;
+                        }
+
+                        else {
+
+                            errorCode = statusCode;
+                            failure = "status " + statusCode;
+
+                            if (response.headers().firstValue("content-type").orElse("").contains("json")) {
+
+                                final ResponseError error = Constants.GSON.fromJson(reader, ResponseError.class);
+                                errorCode = error.getCode();
+                                failure = "error code '" + errorCode + "' and message '" + error.getMessage() + "'";
+                            }
+
+                            retryAfter = response.headers().firstValue("retry-after");
+                        }
+                    }
+                }
+
+                catch (IOException e) {
+
+                    this.metrics.endAttempt();
+                    failure = "'" + e.getMessage() + "'";
+                }
+
+                if (state != null) {
+
+                    if (state.getId() != null) {
+
+                        if (this.progress != null) {
+
+                            this.progress.onComplete();
+                        }
+
+                        return state.getId();
+                    }
+
+                    final long received = this.checkReceived(state.getReceived(), length);
+
+                    // Any progress resets the retry budget, so a long upload over a flaky connection is not failed by
+                    // failures that were spread across many chunks.
+                    if (received > offset) {
+
+                        failures = 0;
+                        offset = received;
+                        continue;
+                    }
+
+                    // A successful response that does not move the upload forward is counted as a failure, so a server
+                    // that stops advancing or moves backwards can not keep the same chunk being sent forever.
+                    failure = "no progress, the server acknowledged " + received + " of " + length + " bytes";
+                    offset = received;
+                }
+
+                failures++;
+
+                // Failures without a response, and responses that did not advance the upload, are always retryable.
+                final boolean retryable = statusCode == 0 || statusCode == 200 || retryPolicy.isRetryable(statusCode, errorCode);
+
+                if (!retryable || !retryPolicy.canRetry(failures)) {
+
+                    this.log.error("Chunk at offset {} of artifact {} failed with {}.", offset, this.request.getFile().getName(), failure);
+                    throw new GradleException("Failed to upload artifact " + this.request.getFile().getName() + ". The chunk at offset " + offset + " failed with " + failure + ".");
+                }
+
+                final long delay = retryPolicy.getDelayMillis(failures, retryAfter);
+                this.log.warn("Chunk at offset {} of artifact {} failed with {}. Resuming in {}ms.", offset, this.request.getFile().getName(), failure, delay);
+                this.waitToRetry(delay);
+
+                // Ask the server how much of the file it has, as the failed chunk may have been partially received.
+                final ResponseSession current = this.querySession(sessionUri);
+
+                if (current != null) {
+
+                    if (current.getId() != null) {
+
+                        return current.getId();
+                    }
+
+                    offset = this.checkReceived(current.getReceived(), length);
+                }
+
+                attempt++;
+                this.log.lifecycle("Resuming upload of artifact {} from byte {} of {}.", this.request.getFile().getName(), offset, length);
+
+                if (this.progress != null) {
+
+                    this.progress.onResume(offset);
+                }
+            }
+        }
+
+        catch (IOException e) {
+
+            this.log.error("Failed to read artifact {}!", this.request.getFile().getName());
+            throw new GradleException("Failed to upload artifact!", e);
+        }
+    }
+
+    /**
+     * Starts a new upload session.
+     *
+     * @param sessionTarget The URI used to start sessions.
+     * @return The ID of the session, or null if the server does not support resumable uploads.
+     * @throws InterruptedException If the thread was interrupted while waiting to retry.
+     */
+    @Nullable
+    private String startSession(String sessionTarget) throws InterruptedException {
+
+        final RetryPolicy retryPolicy = this.context.getRetryPolicy();
+        final ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+
+        try {
+
+            MultipartBody.writeMetadata(metadata, this.request.getMetadata());
+        }
+
+        catch (IOException e) {
+
+            throw new GradleException("Could not serialize the metadata of artifact " + this.request.getFile().getName() + ".", e);
+        }
+
+        final HttpRequest request = this.newRequest(URI.create(sessionTarget))
+                .header("Content-Type", "application/json")
+                .header("X-Upload-Length", String.valueOf(this.request.getFile().length()))
+                .header("X-Upload-File-Name", URLEncoder.encode(this.request.getFile().getName(), StandardCharsets.UTF_8))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(metadata.toByteArray()))
+                .build();
+
+        for (int attempt = 1; ; attempt++) {
+
+            String failure;
+            int statusCode = 0;
+            int errorCode = 0;
+            Optional<String> retryAfter = Optional.empty();
+
+            try {
+
+                final HttpResponse<InputStream> response = this.context.getClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+                statusCode = response.statusCode();
+
+                try (InputStreamReader reader = new InputStreamReader(response.body(), StandardCharsets.UTF_8)) {
+
+                    if (statusCode == 404 || statusCode == 405 || statusCode == 501) {
+
+                        this.log.info("The API does not support resumable uploads. Artifact {} will be uploaded in a single request.", this.request.getFile().getName());
+                        this.context.disableChunkedUploads();
+                        return null;
+                    }
+
+                    if (statusCode == 200 || statusCode == 201) {
+
+                        return Constants.GSON.fromJson(reader, ResponseSession.class).getSessionId();
+                    }
+
+                    errorCode = statusCode;
+                    failure = "status " + statusCode;
+
+                    if (response.headers().firstValue("content-type").orElse("").contains("json")) {
+
+                        final ResponseError error = Constants.GSON.fromJson(reader, ResponseError.class);
+                        errorCode = error.getCode();
+                        failure = "error code '" + errorCode + "' and message '" + error.getMessage() + "'";
+                    }
+
+                    retryAfter = response.headers().firstValue("retry-after");
+                }
+            }
+
+            catch (IOException e) {
+
+                failure = "'" + e.getMessage() + "'";
+            }
+
+            if ((statusCode != 0 && !retryPolicy.isRetryable(statusCode, errorCode)) || !retryPolicy.canRetry(attempt)) {
+
+                this.log.error("Could not start an upload session for artifact {}. The request failed with {}.", this.request.getFile().getName(), failure);
+                throw new GradleException("Failed to upload artifact " + this.request.getFile().getName() + ". Could not start an upload session.");
+            }
+
+            final long delay = retryPolicy.getDelayMillis(attempt, retryAfter);
+            this.log.warn("Could not start an upload session for artifact {}. The request failed with {}. Retrying in {}ms.", this.request.getFile().getName(), failure, delay);
+            this.waitToRetry(delay);
+        }
+    }
+
+    /**
+     * Checks the number of bytes a server reports having received. A value outside of the file, or beyond the bytes
+     * that have been sent, means the server and the client disagree about the upload, and it can not be resumed
+     * safely.
+     *
+     * @param received The number of bytes the server reports having received.
+     * @param length   The length of the file.
+     * @return The number of bytes received.
+     */
+    private long checkReceived(long received, long length) {
+
+        if (received < 0 || received > length) {
+
+            this.log.error("The upload session for artifact {} reported {} bytes received, but the file is {} bytes long.", this.request.getFile().getName(), received, length);
+            throw new GradleException("Failed to upload artifact " + this.request.getFile().getName() + ". The server reported " + received + " bytes received, which is outside of the file.");
+        }
+
+        final long sent = this.getSentBytes();
+
+        if (received > sent) {
+
+            this.log.error("The upload session for artifact {} reported {} bytes received, but only {} bytes have been sent.", this.request.getFile().getName(), received, sent);
+            throw new GradleException("Failed to upload artifact " + this.request.getFile().getName() + ". The server reported " + received + " bytes received, but only " + sent + " bytes have been sent.");
+        }
+
+        return received;
+    }
+
+    /**
+     * Waits before the next attempt. The slot in the build wide upload window is returned while waiting, so a long
+     * retry delay does not keep other uploads in the build from being sent.
+     *
+     * @param delay The delay in milliseconds.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    private void waitToRetry(long delay) throws InterruptedException {
+
+        this.holdingSlot = false;
+        this.context.releaseUploadSlot();
+        Thread.sleep(delay);
+        this.acquireSlot();
+    }
+
+    /**
+     * Waits for a slot in the build wide upload window.
+     *
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    private void acquireSlot() throws InterruptedException {
+
+        final CompletableFuture<Void> slot = this.context.acquireUploadSlot(this.request.isAdditionalFile());
+
+        try {
+
+            slot.get();
+        }
+
+        catch (InterruptedException e) {
+
+            // The slot may have been granted while the thread was interrupted, in which case it is returned.
+            if (!slot.cancel(false)) {
+
+                this.context.releaseUploadSlot();
+            }
+
+            throw e;
+        }
+
+        catch (ExecutionException e) {
+
+            throw new GradleException("Could not wait for an upload slot.", e.getCause());
+        }
+
+        this.holdingSlot = true;
+    }
+
+    /**
+     * Asks the server for the state of a session.
+     *
+     * @param sessionUri The URI of the session.
+     * @return The state of the session, or null if it could not be read.
+     */
+    @Nullable
+    private ResponseSession querySession(URI sessionUri) {
+
+        try {
+
+            final HttpResponse<InputStream> response = this.context.getClient().send(this.newRequest(sessionUri).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+
+            try (InputStreamReader reader = new InputStreamReader(response.body(), StandardCharsets.UTF_8)) {
+
+                if (response.statusCode() == 200) {
+
+                    return Constants.GSON.fromJson(reader, ResponseSession.class);
+                }
+            }
+
+            this.log.debug("Could not query upload session {}. The API responded with status {}.", sessionUri, response.statusCode());
+        }
+
+        catch (IOException e) {
+
+            this.log.debug("Could not query upload session {}.", sessionUri, e);
+        }
+
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        return null;
+    }
+
+    /**
+     * Builds the request that sends a chunk of the file. The chunk is streamed from the file as it is sent, so only a
+     * small buffer is held in memory no matter how large the chunk is.
+     *
+     * @param sessionUri  The URI of the session.
+     * @param channel     The channel to read the file from.
+     * @param offset      The offset of the chunk in the file.
+     * @param chunkLength The length of the chunk.
+     * @param length      The length of the file.
+     * @return The chunk request.
+     */
+    private HttpRequest buildChunkRequest(URI sessionUri, FileChannel channel, long offset, long chunkLength, long length) {
+
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> new ChunkInputStream(channel, offset, chunkLength)), chunkLength);
+
+        publisher = new ObservingBodyPublisher(publisher, new ObservingBodyPublisher.Observer() {
+
+            /**
+             * The position in the file of the next byte that is sent.
+             */
+            private long position;
+
+            @Override
+            public void onStart() {
+
+                this.position = offset;
+            }
+
+            @Override
+            public void onChunk(ByteBuffer chunk) {
+
+                final int size = chunk.remaining();
+                ChunkedUpload.this.markSent(chunk, this.position);
+                this.position += size;
+            }
+        });
+
+        if (this.context.getBandwidthLimiter() != null) {
+
+            publisher = this.context.getBandwidthLimiter().throttle(publisher);
+        }
+
+        publisher = new ObservingBodyPublisher(publisher, this.metrics.bodyObserver());
+
+        if (this.progress != null) {
+
+            // Only the chunks are passed on, as the progress of the whole file continues across requests.
+            final ProgressTracker tracker = this.progress;
+            publisher = new ObservingBodyPublisher(publisher, tracker::onChunk);
+        }
+
+        return this.newRequest(sessionUri)
+                .header("Content-Type", "application/octet-stream")
+                .header("Content-Range", "bytes " + offset + "-" + (offset + chunkLength - 1) + "/" + length)
+                .PUT(publisher)
+                .build();
+    }
+
+    /**
+     * Creates a request builder with the headers shared by every session request.
+     *
+     * @param uri The URI of the request.
+     * @return The request builder.
+     */
+    private HttpRequest.Builder newRequest(URI uri) {
+
+        final HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("X-Api-Token", this.context.getToken())
+                .header("User-Agent", "CurseForgeGradle (DarkhaxDev)");
+
+        if (this.context.getRequestTimeout() != null) {
+
+            builder.timeout(this.context.getRequestTimeout());
+        }
+
+        return builder;
+    }
+
+    /**
+     * Records a buffer of the file that is being sent, and adds the part that has not been sent before to the file
+     * digest. Buffers are sent on the threads of the HTTP client, so this is synchronized with the upload thread.
+     *
+     * @param buffer   The buffer that is being sent.
+     * @param position The position of the buffer in the file.
+     */
+    private synchronized void markSent(ByteBuffer buffer, long position) {
+
+        final long end = position + buffer.remaining();
+
+        if (position <= this.sentBytes && end > this.sentBytes) {
+
+            if (this.fileDigest != null) {
+
+                buffer.position(buffer.position() + (int) (this.sentBytes - position));
+                this.fileDigest.update(buffer);
+            }
+
+            this.sentBytes = end;
+        }
+    }
+
+    /**
+     * Gets the number of bytes from the start of the file that have been sent at least once.
+     *
+     * @return The number of bytes sent.
+     */
+    private synchronized long getSentBytes() {
+
+        return this.sentBytes;
+    }
+
+    /**
+     * Gets the digest of the uploaded file. The server may report an upload as complete before every byte of the file
+     * was sent, in which case the digest only covers part of the file and is discarded.
+     *
+     * @return The digest of the whole file, or null if it was not computed or does not cover the whole file.
+     */
+    @Nullable
+    synchronized MessageDigest getFileDigest() {
+
+        return this.sentBytes == this.request.getFile().length() ? this.fileDigest : null;
+    }
+
+    /**
+     * An input stream that reads one chunk of the file. Reads are made at absolute positions, so every chunk can share
+     * the channel of the upload.
+     */
+    private final class ChunkInputStream extends InputStream {
+
+        /**
+         * The channel to read the file from.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The position in the file of the next byte to read.
+         */
+        private long position;
+
+        /**
+         * The number of bytes of the chunk that have not been read yet.
+         */
+        private long remaining;
+
+        /**
+         * Creates a new chunk stream.
+         *
+         * @param channel The channel to read the file from.
+         * @param offset  The offset of the chunk in the file.
+         * @param length  The length of the chunk.
+         */
+        private ChunkInputStream(FileChannel channel, long offset, long length) {
+
+            this.channel = channel;
+            this.position = offset;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            final byte[] single = new byte[1];
+            return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+
+            if (this.remaining <= 0) {
+
+                return -1;
+            }
+
+            if (length == 0) {
+
+                return 0;
+            }
+
+            final int read = this.channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, this.remaining)), this.position);
+
+            if (read < 0) {
+
+                throw new IOException("The file " + ChunkedUpload.this.request.getFile().getName() + " changed while it was being uploaded.");
+            }
+
+            this.position += read;
+            this.remaining -= read;
+            return read;
+        }
+    }
+}
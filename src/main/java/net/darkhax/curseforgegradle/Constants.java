@@ -2,6 +2,12 @@ package net.darkhax.curseforgegradle;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import net.darkhax.curseforgegradle.api.metadata.Metadata;
+import net.darkhax.curseforgegradle.api.metadata.MetadataAdapter;
+import net.darkhax.curseforgegradle.api.metadata.ProjectRelations;
+import net.darkhax.curseforgegradle.api.metadata.ProjectRelationsAdapter;
+import net.darkhax.curseforgegradle.api.metadata.Relation;
+import net.darkhax.curseforgegradle.api.metadata.RelationAdapter;
 
 import java.util.Set;
 
@@ -15,12 +21,12 @@ public class Constants {
      * A GSON instance that is used by the plugin to serialize objects to JSON. This is primarily used to generate API
      * request bodies and parse responses from the CurseForge API.
      */
-    public static final Gson GSON = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+    public static final Gson GSON = createGsonBuilder().create();
 
     /**
      * A GSON instance that is used by the plugin to serialize objects to JSON for use in more readable logging.
      */
-    public static final Gson PRETTY_GSON = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().setPrettyPrinting().create();
+    public static final Gson PRETTY_GSON = createGsonBuilder().setPrettyPrinting().create();
 
     /**
      * The value for an embedded relationship. This is used when the files you publish contain an embedded version of
@@ -95,4 +101,19 @@ public class Constants {
      * An immutable set of all release types known to be valid. This is often used to validate user input.
      */
     public static final Set<String> VALID_RELEASE_TYPES = Set.of(RELEASE_TYPE_ALPHA, RELEASE_TYPE_BETA, RELEASE_TYPE_RELEASE);
+
+    /**
+     * Creates a GSON builder with the settings shared by every GSON instance of the plugin. The upload metadata is
+     * serialized for every upload, so hand-written adapters are registered for it instead of using reflection.
+     *
+     * @return A new GSON builder.
+     */
+    private static GsonBuilder createGsonBuilder() {
+
+        return new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapter(Metadata.class, new MetadataAdapter())
+                .registerTypeAdapter(ProjectRelations.class, new ProjectRelationsAdapter())
+                .registerTypeAdapter(Relation.class, new RelationAdapter());
+    }
 }
\ No newline at end of file
@@ -1,17 +1,20 @@
 package net.darkhax.curseforgegradle;
 
+import com.google.gson.stream.JsonReader;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -20,10 +23,17 @@ import java.util.zip.GZIPInputStream;
  */
 public class CurseForgeGradlePlugin implements Plugin<Project> {
 
+    /**
+     * The size of the buffer used to inflate GZip encoded responses. The default buffer of GZIPInputStream is only 512
+     * bytes, which causes many small reads for large responses.
+     */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     @Override
     public void apply(Project project) {
 
         project.getLogger().debug("Applying CurseForgeGradle plugin to project {}", project.getDisplayName());
+        VersionDetectionExtension.get(project);
     }
 
     /**
@@ -36,6 +46,54 @@ public class CurseForgeGradlePlugin implements Plugin<Project> {
      */
     public static Reader fetch(String urlString, @Nullable String token) throws IOException, URISyntaxException {
 
+        return getHttpReader(openConnection(urlString, token));
+    }
+
+    /**
+     * Fetches a JSON response and deserializes it with Gson. The response is decoded as it is read, so no intermediate
+     * string is created for large responses.
+     *
+     * @param urlString The URL as a string.
+     * @param token     An optional API token.
+     * @param type      The type of the value in the response.
+     * @param <T>       The type of the value in the response.
+     * @return The deserialized response.
+     * @throws IOException This exception will be raised if the connection was rejected or could not be established.
+     */
+    public static <T> T fetchJson(String urlString, @Nullable String token, Type type) throws IOException, URISyntaxException {
+
+        return readJson(openConnection(urlString, token), type);
+    }
+
+    /**
+     * Reads the JSON response of a connection and deserializes it with Gson. The response is streamed through a
+     * {@link JsonReader}, so objects are built as the response is read.
+     *
+     * @param connection The connection to read.
+     * @param type       The type of the value in the response.
+     * @param <T>        The type of the value in the response.
+     * @return The deserialized response.
+     * @throws IOException This exception will be raised if the response could not be read.
+     */
+    public static <T> T readJson(HttpURLConnection connection, Type type) throws IOException {
+
+        try (JsonReader reader = new JsonReader(getHttpReader(connection))) {
+
+            return Constants.GSON.fromJson(reader, type);
+        }
+    }
+
+    /**
+     * Opens an HTTP connection with an optional API token that is specified in a format accepted by the CurseForge
+     * API. The connection is not established until it is read, so additional request headers can still be set.
+     *
+     * @param urlString The URL as a string.
+     * @param token     An optional API token.
+     * @return The HTTP connection.
+     * @throws IOException This exception will be raised if the connection could not be opened.
+     */
+    public static HttpURLConnection openConnection(String urlString, @Nullable String token) throws IOException, URISyntaxException {
+
         final URL url = new URI(urlString).toURL();
 
         final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
@@ -47,37 +105,47 @@ public class CurseForgeGradlePlugin implements Plugin<Project> {
             connection.addRequestProperty("X-Api-Token", token);
         }
 
-        return getHttpReader(connection);
+        return connection;
     }
 
     /**
-     * Creates an HTTP reader that can accept GZip encoded streams when possible.
+     * Creates an HTTP reader that can accept GZip encoded streams when possible. Responses are always decoded as
+     * UTF-8, which is the encoding used by the CurseForge API.
      *
      * @param connection The connection to read.
      * @return The HTTP reader.
      */
-    private static Reader getHttpReader(HttpURLConnection connection) throws IOException {
+    static Reader getHttpReader(HttpURLConnection connection) throws IOException {
 
         // If the server accepts GZip, use the GZip stream for faster communication.
         if ("gzip".equals(connection.getContentEncoding())) {
 
-            return new InputStreamReader(new GZIPInputStream(connection.getInputStream()));
+            return new InputStreamReader(new GZIPInputStream(connection.getInputStream(), GZIP_BUFFER_SIZE), StandardCharsets.UTF_8);
         }
 
         // The fallback is just a normal input stream.
         else {
 
-            return new InputStreamReader(connection.getInputStream());
+            return new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8);
         }
     }
 
+    /**
+     * Reads the full contents of a reader into a string. Line breaks are preserved.
+     *
+     * @param read The reader to read.
+     * @return The contents of the reader.
+     * @throws IOException This exception will be raised if the reader could not be read.
+     * @deprecated JSON responses should be read with {@link #readJson(HttpURLConnection, Type)}, which does not buffer
+     * the whole response as a string.
+     */
+    @Deprecated
     public static String readString(Reader read) throws IOException {
-        try (BufferedReader input = new BufferedReader(read)) {
-            String nextLine;
-            StringBuilder output = new StringBuilder();
-            while ((nextLine = input.readLine()) != null) {
-                output.append(nextLine);
-            }
+
+        try (Reader input = read) {
+
+            final StringWriter output = new StringWriter();
+            input.transferTo(output);
             return output.toString();
         }
     }
@@ -0,0 +1,436 @@
+package net.darkhax.curseforgegradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A build service that is shared by every {@link TaskPublishCurseForge} in the build. The service owns the HTTP
+ * clients used to talk to the API and enforces a build wide limit on the number of uploads that can be in flight at
+ * once. This allows publish tasks in many projects to run in parallel without exceeding the API rate limits.
+ */
+public abstract class CurseForgeUploadService implements BuildService<CurseForgeUploadService.Parameters>, AutoCloseable {
+
+    /**
+     * The name the service is registered with.
+     */
+    public static final String NAME = "curseForgeUploads";
+
+    /**
+     * The Gradle property that can be used to configure the build wide upload limit.
+     */
+    public static final String MAX_PARALLEL_UPLOADS_PROPERTY = "curseforgegradle.maxParallelUploads";
+
+    /**
+     * The default number of uploads that can be in flight at once across the whole build.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_UPLOADS = 4;
+
+    /**
+     * The Gradle property that can be used to limit the combined upload bandwidth of the build, in bytes per second.
+     */
+    public static final String MAX_BYTES_PER_SECOND_PROPERTY = "curseforgegradle.maxBytesPerSecond";
+
+    /**
+     * The configurable parameters for the service.
+     */
+    public interface Parameters extends BuildServiceParameters {
+
+        /**
+         * The maximum number of uploads that can be in flight at once across the whole build.
+         *
+         * @return The maximum number of parallel uploads.
+         */
+        Property<Integer> getMaxParallelUploads();
+
+        /**
+         * The maximum combined rate of every upload in the build, in bytes per second. Values of 0 or less disable the
+         * limit.
+         *
+         * @return The bandwidth limit.
+         */
+        Property<Long> getMaxBytesPerSecond();
+    }
+
+    /**
+     * HTTP clients created by the service. Tasks with the same connection settings will share the same client.
+     */
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * The IDs of files that have been uploaded, keyed by the ID of the request that uploaded them. Entries are removed
+     * once the task that submitted the request has read them.
+     */
+    private final Map<String, Long> uploadedFiles = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of uploads that have finished, keyed by the ID of the request that was uploaded. Entries are removed
+     * once the task that submitted the request has read them.
+     */
+    private final Map<String, UploadMetrics> uploadMetrics = new ConcurrentHashMap<>();
+
+    /**
+     * Progress trackers for uploads that have not started yet, keyed by the ID of the request they track.
+     */
+    private final Map<String, ProgressTracker> progressTrackers = new ConcurrentHashMap<>();
+
+    /**
+     * Publish ledgers that have been loaded, keyed by the path of the ledger file. Tasks and work items that use the
+     * same ledger file share the same instance.
+     */
+    private final Map<Path, PublishLedger> ledgers = new ConcurrentHashMap<>();
+
+    /**
+     * Digest caches that have been loaded, keyed by the path of the cache file.
+     */
+    private final Map<Path, DigestCache> digestCaches = new ConcurrentHashMap<>();
+
+    /**
+     * Game version catalogs that have been loaded, keyed by the path of the cache file. Each catalog is loaded at most
+     * once per build. Catalogs that could not be loaded are stored as empty values.
+     */
+    private final Map<Path, Optional<GameVersionCatalog>> gameVersionCatalogs = new ConcurrentHashMap<>();
+
+    /**
+     * Permits for uploads that are currently in flight across the whole build.
+     */
+    private final UploadWindow uploadWindow;
+
+    /**
+     * Limits the combined bandwidth of every upload in the build, or null if bandwidth is not limited.
+     */
+    @Nullable
+    private final BandwidthLimiter bandwidthLimiter;
+
+    /**
+     * Runs chunked uploads, which block while they send their chunks. The pool is bounded by the build wide upload
+     * limit, and idle threads are stopped, so the number of threads does not grow with the number of files.
+     */
+    private final ThreadPoolExecutor chunkedUploadExecutor;
+
+    public CurseForgeUploadService() {
+
+        this.uploadWindow = new UploadWindow(this.getParameters().getMaxParallelUploads().get());
+
+        final long maxBytesPerSecond = this.getParameters().getMaxBytesPerSecond().get();
+        this.bandwidthLimiter = maxBytesPerSecond > 0 ? new BandwidthLimiter(maxBytesPerSecond) : null;
+
+        final int chunkedThreads = Math.max(1, this.getParameters().getMaxParallelUploads().get());
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.chunkedUploadExecutor = new ThreadPoolExecutor(chunkedThreads, chunkedThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+
+            final Thread thread = new Thread(runnable, "CurseForgeGradle chunked upload " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chunkedUploadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Registers the service with the build if it has not already been registered.
+     *
+     * @param project The project requesting the service.
+     * @return A provider for the shared service.
+     */
+    public static Provider<CurseForgeUploadService> register(Project project) {
+
+        return project.getGradle().getSharedServices().registerIfAbsent(NAME, CurseForgeUploadService.class, spec -> {
+
+            spec.getParameters().getMaxParallelUploads().set(project.getProviders().gradleProperty(MAX_PARALLEL_UPLOADS_PROPERTY).map(Integer::parseInt).orElse(DEFAULT_MAX_PARALLEL_UPLOADS));
+            spec.getParameters().getMaxBytesPerSecond().set(project.getProviders().gradleProperty(MAX_BYTES_PER_SECOND_PROPERTY).map(Long::parseLong).orElse(0L));
+        });
+    }
+
+    /**
+     * Gets an HTTP client with the given connection settings. Clients are created once and reused for the rest of the
+     * build.
+     *
+     * @param connectTimeout The maximum amount of time to wait for a connection, or null for no limit.
+     * @param preferHttp2    Whether HTTP/2 should be negotiated when the server supports it.
+     * @return The shared HTTP client.
+     */
+    public HttpClient getClient(@Nullable Duration connectTimeout, boolean preferHttp2) {
+
+        return this.clients.computeIfAbsent(connectTimeout + "/" + preferHttp2, key -> UploadContext.createClient(connectTimeout, preferHttp2));
+    }
+
+    /**
+     * Gets the limiter shared by every upload in the build.
+     *
+     * @return The bandwidth limiter, or null if bandwidth is not limited.
+     */
+    @Nullable
+    public BandwidthLimiter getBandwidthLimiter() {
+
+        return this.bandwidthLimiter;
+    }
+
+    /**
+     * Gets the window that limits the number of uploads in flight across the whole build.
+     *
+     * @return The build wide upload window.
+     */
+    UploadWindow getUploadWindow() {
+
+        return this.uploadWindow;
+    }
+
+    /**
+     * Gets the executor that runs chunked uploads.
+     *
+     * @return The chunked upload executor.
+     */
+    Executor getChunkedUploadExecutor() {
+
+        return this.chunkedUploadExecutor;
+    }
+
+    /**
+     * Gets the publish ledger stored in the given file. Ledgers are loaded once and shared for the rest of the build.
+     *
+     * @param file The ledger file.
+     * @param log  The logger to report problems to.
+     * @return The shared publish ledger.
+     */
+    public PublishLedger getLedger(File file, Logger log) {
+
+        return this.ledgers.computeIfAbsent(file.toPath().toAbsolutePath(), path -> new PublishLedger(path, log));
+    }
+
+    /**
+     * Gets the digest cache stored in the given file. Caches are loaded once and shared for the rest of the build.
+     *
+     * @param file The cache file.
+     * @param log  The logger to report problems to.
+     * @return The shared digest cache.
+     */
+    public DigestCache getDigestCache(File file, Logger log) {
+
+        return this.digestCaches.computeIfAbsent(file.toPath().toAbsolutePath(), path -> new DigestCache(path, log));
+    }
+
+    /**
+     * Gets the game version catalog for an API endpoint. The catalog is loaded once and shared for the rest of the
+     * build. See {@link GameVersionCatalog#load(String, String, Path, Duration, Logger)}.
+     *
+     * @param endpoint  The API endpoint to fetch the catalog from.
+     * @param token     An optional API token.
+     * @param cacheFile The file the catalog is cached in.
+     * @param ttl       How long a cached catalog is used before it is revalidated.
+     * @param log       The logger to report problems to.
+     * @return The catalog, or null if it could not be loaded.
+     */
+    @Nullable
+    public GameVersionCatalog getGameVersionCatalog(String endpoint, @Nullable String token, File cacheFile, Duration ttl, Logger log) {
+
+        return this.gameVersionCatalogs.computeIfAbsent(cacheFile.toPath().toAbsolutePath(), path -> Optional.ofNullable(GameVersionCatalog.load(endpoint, token, path, ttl, log))).orElse(null);
+    }
+
+    /**
+     * Sends an upload request once a build wide upload permit is available, and waits for it to finish. See
+     * {@link #uploadAsync(UploadRequest, UploadContext, Logger, UploadWindow, boolean)}.
+     *
+     * @param request The request to send.
+     * @param context The context for the upload.
+     * @param log     The logger to report progress and errors to.
+     * @return The ID CurseForge assigned to the uploaded file.
+     * @throws InterruptedException If the thread was interrupted while waiting for the upload.
+     */
+    public long upload(UploadRequest request, UploadContext context, Logger log) throws InterruptedException {
+
+        final CompletableFuture<Long> upload = this.uploadAsync(request, context, log, null, false);
+
+        try {
+
+            return upload.get();
+        }
+
+        catch (InterruptedException e) {
+
+            upload.cancel(true);
+            throw e;
+        }
+
+        catch (ExecutionException e) {
+
+            throw UploadRequest.toGradleException(e.getCause());
+        }
+    }
+
+    /**
+     * Sends an upload request once a build wide upload permit is available, without blocking the calling thread. If
+     * the context has a publish ledger and the same file has already been published with the same metadata, the upload
+     * is skipped and the existing file ID is reused. The timing and throughput of the upload are recorded whatever the
+     * outcome, and can be retrieved with {@link #takeMetrics(UploadRequest)}.
+     *
+     * @param request    The request to send.
+     * @param context    The context for the upload.
+     * @param log        The logger to report progress and errors to.
+     * @param taskWindow An optional window that limits the uploads of a single task. A permit from this window is
+     *                   held until the upload has finished, including while it waits to be retried.
+     * @param urgent     Whether the upload should be started ahead of other uploads that are waiting for a permit.
+     * @return A future that completes with the ID CurseForge assigned to the uploaded file.
+     */
+    CompletableFuture<Long> uploadAsync(UploadRequest request, UploadContext context, Logger log, @Nullable UploadWindow taskWindow, boolean urgent) {
+
+        final UploadMetrics metrics = new UploadMetrics(request);
+        final ProgressTracker progress = this.progressTrackers.remove(request.getId());
+        final PublishLedger ledger = context.getLedger();
+        String ledgerKey = null;
+
+        if (ledger != null) {
+
+            try {
+
+                if (request.getSha256() == null) {
+
+                    final long hashStart = System.nanoTime();
+                    request.setSha256(context.getDigestCache() != null ? context.getDigestCache().getDigest(request.getFile()) : DigestCache.hash(request.getFile().toPath()));
+                    metrics.recordHash(System.nanoTime() - hashStart);
+                }
+
+                ledgerKey = request.getLedgerKey(request.getSha256());
+            }
+
+            catch (IOException e) {
+
+                return this.finish(request, metrics, CompletableFuture.failedFuture(new GradleException("Could not read upload artifact " + request.getFile().getName() + ".", e)));
+            }
+
+            final Long publishedId = ledger.getFileId(ledgerKey);
+
+            if (publishedId != null) {
+
+                log.lifecycle("Artifact {} has already been published with ID {}. Skipping upload.", request.getFile().getName(), publishedId);
+                metrics.markSkipped(publishedId);
+                this.uploadedFiles.put(request.getId(), publishedId);
+                return this.finish(request, metrics, CompletableFuture.completedFuture(publishedId));
+            }
+        }
+
+        final String recordKey = ledgerKey;
+        final long queueStart = System.nanoTime();
+        final CompletableFuture<Void> taskPermit = taskWindow != null ? taskWindow.acquire(urgent) : CompletableFuture.completedFuture(null);
+
+        final CompletableFuture<Long> upload = taskPermit.thenCompose(ignored -> {
+
+            metrics.recordQueued(System.nanoTime() - queueStart);
+
+            // The build wide window is applied by the request itself, which only holds a slot while it is sending.
+            return request.sendAsync(context, log, metrics, progress);
+        }).thenApply(fileId -> {
+
+            this.uploadedFiles.put(request.getId(), fileId);
+
+            if (ledger != null) {
+
+                ledger.record(recordKey, fileId, request.getFile().getName());
+            }
+
+            return fileId;
+        });
+
+        // The task permit is held until the upload has finished. If the upload failed before the task permit was
+        // granted, the pending permit is cancelled so it is never granted.
+        if (taskWindow != null) {
+
+            upload.whenComplete((fileId, error) -> {
+
+                if (!taskPermit.cancel(false)) {
+
+                    taskWindow.release();
+                }
+            });
+        }
+
+        return this.finish(request, metrics, upload);
+    }
+
+    /**
+     * Stores the metrics of an upload once it has finished, whatever the outcome.
+     *
+     * @param request The request that was uploaded.
+     * @param metrics The metrics of the upload.
+     * @param upload  The future for the upload.
+     * @return A future that completes once the metrics have been stored, with the same result as the upload.
+     */
+    private CompletableFuture<Long> finish(UploadRequest request, UploadMetrics metrics, CompletableFuture<Long> upload) {
+
+        return upload.whenComplete((fileId, error) -> {
+
+            metrics.finish();
+            this.uploadMetrics.put(request.getId(), metrics);
+        });
+    }
+
+    /**
+     * Retrieves and forgets the ID of a file uploaded by the given request.
+     *
+     * @param request The request that uploaded the file.
+     * @return The ID CurseForge assigned to the file, or null if the request did not complete.
+     */
+    @Nullable
+    public Long takeUploadedFile(UploadRequest request) {
+
+        return this.uploadedFiles.remove(request.getId());
+    }
+
+    /**
+     * Retrieves and forgets the metrics of an upload. Any progress tracker for a request that was never started is
+     * also forgotten.
+     *
+     * @param request The request that was uploaded.
+     * @return The metrics of the upload, or null if the upload was never started.
+     */
+    @Nullable
+    public UploadMetrics takeMetrics(UploadRequest request) {
+
+        this.progressTrackers.remove(request.getId());
+        return this.uploadMetrics.remove(request.getId());
+    }
+
+    /**
+     * Registers a tracker that reports the progress of a request while it is uploaded.
+     *
+     * @param request The request to track.
+     * @param tracker The tracker that reports progress.
+     */
+    void trackProgress(UploadRequest request, ProgressTracker tracker) {
+
+        this.progressTrackers.put(request.getId(), tracker);
+    }
+
+    @Override
+    public void close() {
+
+        this.chunkedUploadExecutor.shutdownNow();
+        this.clients.clear();
+        this.ledgers.clear();
+        this.digestCaches.clear();
+        this.gameVersionCatalogs.clear();
+        this.uploadedFiles.clear();
+        this.uploadMetrics.clear();
+        this.progressTrackers.clear();
+    }
+}
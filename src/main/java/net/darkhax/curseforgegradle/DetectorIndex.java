@@ -0,0 +1,134 @@
+package net.darkhax.curseforgegradle;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * A lookup index built from every {@link GameVersionDetector} on the classpath. The detectors are loaded once when the
+ * index is first used, and their tables are merged so that a project can be inspected in a single pass no matter how
+ * many detectors are installed.
+ */
+final class DetectorIndex {
+
+    /**
+     * The plugin IDs that imply a game version, from every detector.
+     */
+    private final Map<String, String> pluginVersions;
+
+    /**
+     * The names of properties that hold a game version, from every detector.
+     */
+    private final Set<String> versionProperties;
+
+    /**
+     * Whether any detector uses the Java version.
+     */
+    private final boolean detectsJavaVersion;
+
+    /**
+     * The mod loaders whose files must define an environment, from every detector.
+     */
+    private final Set<String> environmentLoaders;
+
+    /**
+     * The names of the games supported by the installed detectors.
+     */
+    private final Set<String> games;
+
+    private DetectorIndex(Iterable<GameVersionDetector> detectors) {
+
+        final Map<String, String> pluginVersions = new LinkedHashMap<>();
+        final Set<String> versionProperties = new LinkedHashSet<>();
+        final Set<String> environmentLoaders = new LinkedHashSet<>();
+        final Set<String> games = new LinkedHashSet<>();
+        boolean detectsJavaVersion = false;
+
+        for (GameVersionDetector detector : detectors) {
+
+            games.add(detector.getGame());
+            detector.getPluginVersions().forEach(pluginVersions::putIfAbsent);
+            versionProperties.addAll(detector.getVersionProperties());
+            environmentLoaders.addAll(detector.getEnvironmentLoaders());
+            detectsJavaVersion |= detector.detectsJavaVersion();
+        }
+
+        this.pluginVersions = Collections.unmodifiableMap(pluginVersions);
+        this.versionProperties = Collections.unmodifiableSet(versionProperties);
+        this.environmentLoaders = Collections.unmodifiableSet(environmentLoaders);
+        this.games = Collections.unmodifiableSet(games);
+        this.detectsJavaVersion = detectsJavaVersion;
+    }
+
+    /**
+     * Gets the index of every detector on the classpath of the plugin.
+     *
+     * @return The detector index.
+     */
+    static DetectorIndex get() {
+
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Gets the plugin IDs that imply a game version.
+     *
+     * @return An immutable map of plugin IDs to game versions.
+     */
+    Map<String, String> getPluginVersions() {
+
+        return this.pluginVersions;
+    }
+
+    /**
+     * Gets the names of properties that hold a game version.
+     *
+     * @return An immutable set of property names.
+     */
+    Set<String> getVersionProperties() {
+
+        return this.versionProperties;
+    }
+
+    /**
+     * Checks if any detector uses the Java version.
+     *
+     * @return True if the Java version should be detected.
+     */
+    boolean detectsJavaVersion() {
+
+        return this.detectsJavaVersion;
+    }
+
+    /**
+     * Checks if a set of game versions contains a mod loader whose files must define an environment.
+     *
+     * @param gameVersions The game versions of a file.
+     * @return True if the file must define an environment.
+     */
+    boolean requiresEnvironment(Set<String> gameVersions) {
+
+        return !Collections.disjoint(this.environmentLoaders, gameVersions);
+    }
+
+    /**
+     * Gets the names of the games supported by the installed detectors.
+     *
+     * @return An immutable set of game names.
+     */
+    Set<String> getGames() {
+
+        return this.games;
+    }
+
+    /**
+     * Loads the index when it is first used.
+     */
+    private static final class Holder {
+
+        private static final DetectorIndex INSTANCE = new DetectorIndex(ServiceLoader.load(GameVersionDetector.class, GameVersionDetector.class.getClassLoader()));
+    }
+}
@@ -0,0 +1,188 @@
+package net.darkhax.curseforgegradle;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import org.gradle.api.logging.Logger;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A persistent cache of the SHA-256 digests of upload artifacts. Entries are keyed by the absolute path of the file and
+ * are only reused while the size and last modified time of the file are unchanged, so large artifacts only need to be
+ * hashed again when they are rebuilt.
+ */
+public final class DigestCache {
+
+    /**
+     * The type of the map stored in the cache file.
+     */
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+
+    /**
+     * The size of each region of the file that is mapped into memory while hashing. Mapping the file in regions keeps
+     * the address space used by a single hash bounded, even for very large files.
+     */
+    private static final long MAP_REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The file the cache is persisted to.
+     */
+    private final Path file;
+
+    /**
+     * The logger used to report problems with the cache.
+     */
+    private final Logger log;
+
+    /**
+     * The cached digests, keyed by the absolute path of the hashed file.
+     */
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Creates a new digest cache backed by the given file. Existing entries are loaded from the file if it exists.
+     *
+     * @param file The file the cache is persisted to.
+     * @param log  The logger to report problems to.
+     */
+    public DigestCache(Path file, Logger log) {
+
+        this.file = file;
+        this.log = log;
+
+        final Map<String, Entry> loaded = JsonFiles.read(file, ENTRIES_TYPE, log, "digest cache");
+
+        if (loaded != null) {
+
+            this.entries.putAll(loaded);
+        }
+    }
+
+    /**
+     * Gets the SHA-256 digest of a file, hashing it only if there is no cached digest for its current size and last
+     * modified time.
+     *
+     * @param target The file to hash.
+     * @return The SHA-256 digest of the file as a hexadecimal string.
+     * @throws IOException If the file could not be read.
+     */
+    public String getDigest(File target) throws IOException {
+
+        final String cached = this.getCachedDigest(target);
+
+        if (cached != null) {
+
+            return cached;
+        }
+
+        final String digest = hash(target.toPath());
+        this.put(target, digest);
+        return digest;
+    }
+
+    /**
+     * Gets the cached digest of a file without hashing it.
+     *
+     * @param target The file to look up.
+     * @return The cached SHA-256 digest, or null if the file has not been hashed or has changed since it was hashed.
+     */
+    @Nullable
+    public synchronized String getCachedDigest(File target) {
+
+        final Entry entry = this.entries.get(target.getAbsolutePath());
+        return entry != null && entry.size == target.length() && entry.lastModified == target.lastModified() ? entry.sha256 : null;
+    }
+
+    /**
+     * Records the digest of a file. This allows a digest that was computed elsewhere, such as while the file was being
+     * uploaded, to be reused by later builds.
+     *
+     * @param target The file that was hashed.
+     * @param digest The SHA-256 digest of the file as a hexadecimal string.
+     */
+    public synchronized void put(File target, String digest) {
+
+        this.entries.put(target.getAbsolutePath(), new Entry(target.length(), target.lastModified(), digest));
+
+        try {
+
+            JsonFiles.writeAtomically(this.file, this.entries, ENTRIES_TYPE);
+        }
+
+        catch (IOException e) {
+
+            // The cache is only an optimization, so failing to write it should not fail the build.
+            this.log.warn("Could not write digest cache {}.", this.file, e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 digest of a file by mapping it into memory one region at a time.
+     *
+     * @param path The file to hash.
+     * @return The SHA-256 digest of the file as a hexadecimal string.
+     * @throws IOException If the file could not be read.
+     */
+    public static String hash(Path path) throws IOException {
+
+        final MessageDigest digest = Digests.sha256();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            final long size = channel.size();
+
+            for (long position = 0; position < size; position += MAP_REGION_SIZE) {
+
+                final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_REGION_SIZE, size - position));
+                digest.update(region);
+            }
+        }
+
+        return Digests.toHex(digest.digest());
+    }
+
+    /**
+     * A single cached digest.
+     */
+    private static final class Entry {
+
+        /**
+         * The size of the file when it was hashed.
+         */
+        @Expose
+        @SerializedName("size")
+        private long size;
+
+        /**
+         * The last modified time of the file when it was hashed.
+         */
+        @Expose
+        @SerializedName("lastModified")
+        private long lastModified;
+
+        /**
+         * The SHA-256 digest of the file as a hexadecimal string.
+         */
+        @Expose
+        @SerializedName("sha256")
+        private String sha256;
+
+        private Entry(long size, long lastModified, String sha256) {
+
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package net.darkhax.curseforgegradle;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for creating and formatting the message digests used to identify published files.
+ */
+public final class Digests {
+
+    /**
+     * The characters used to format a digest as hexadecimal.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Digests() {
+
+    }
+
+    /**
+     * Creates a new SHA-256 message digest.
+     *
+     * @return A new SHA-256 message digest.
+     */
+    public static MessageDigest sha256() {
+
+        try {
+
+            return MessageDigest.getInstance("SHA-256");
+        }
+
+        catch (NoSuchAlgorithmException e) {
+
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+
+    /**
+     * Formats a digest as a lowercase hexadecimal string.
+     *
+     * @param digest The digest bytes.
+     * @return The hexadecimal string.
+     */
+    public static String toHex(byte[] digest) {
+
+        final char[] chars = new char[digest.length * 2];
+
+        for (int i = 0; i < digest.length; i++) {
+
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+}
@@ -0,0 +1,225 @@
+package net.darkhax.curseforgegradle;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import net.darkhax.curseforgegradle.api.game.GameVersion;
+import org.gradle.api.logging.Logger;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The game versions known to CurseForge. The catalog is fetched from the {@code /api/game/versions} endpoint and kept
+ * in a cache file under the Gradle user home, so it is shared by every build on the machine. A cached catalog is used
+ * without contacting the API until it is older than its time to live. After that it is revalidated using its ETag, so
+ * the full list is only downloaded again when it has changed.
+ */
+public final class GameVersionCatalog {
+
+    /**
+     * The type of the list returned by the API.
+     */
+    private static final Type VERSIONS_TYPE = new TypeToken<List<GameVersion>>() {}.getType();
+
+    /**
+     * The ETag of the response the catalog was read from, or null if the API did not send one.
+     */
+    @Expose
+    @SerializedName("etag")
+    @Nullable
+    private String etag;
+
+    /**
+     * The time the catalog was last fetched or revalidated, in milliseconds since the epoch.
+     */
+    @Expose
+    @SerializedName("fetchedAt")
+    private long fetchedAt;
+
+    /**
+     * The game versions known to CurseForge.
+     */
+    @Expose
+    @SerializedName("versions")
+    private List<GameVersion> versions = new ArrayList<>();
+
+    /**
+     * The lower case names and slugs of every version, used to check versions quickly. This is created when first
+     * needed.
+     */
+    @Nullable
+    private transient Set<String> knownNames;
+
+    private GameVersionCatalog() {
+
+    }
+
+    private GameVersionCatalog(@Nullable String etag, long fetchedAt, List<GameVersion> versions) {
+
+        this.etag = etag;
+        this.fetchedAt = fetchedAt;
+        this.versions = versions;
+    }
+
+    /**
+     * Checks if a game version is known to CurseForge. Versions are matched against the name and slug of every known
+     * version, ignoring case.
+     *
+     * @param version The game version to check.
+     * @return True if the version is known.
+     */
+    public boolean contains(String version) {
+
+        Set<String> names = this.knownNames;
+
+        if (names == null) {
+
+            names = new HashSet<>();
+
+            for (GameVersion known : this.versions) {
+
+                if (known.getName() != null) {
+
+                    names.add(known.getName().toLowerCase(Locale.ROOT));
+                }
+
+                if (known.getSlug() != null) {
+
+                    names.add(known.getSlug().toLowerCase(Locale.ROOT));
+                }
+            }
+
+            this.knownNames = names;
+        }
+
+        return names.contains(version.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets the game versions known to CurseForge.
+     *
+     * @return An immutable list of game versions.
+     */
+    public List<GameVersion> getVersions() {
+
+        return Collections.unmodifiableList(this.versions);
+    }
+
+    /**
+     * Gets the time the catalog was last fetched or revalidated.
+     *
+     * @return The time the catalog was fetched.
+     */
+    public Instant getFetchedAt() {
+
+        return Instant.ofEpochMilli(this.fetchedAt);
+    }
+
+    /**
+     * Loads the catalog for an API endpoint. A cached catalog that is younger than the time to live is used as is. An
+     * older catalog is revalidated with the API, and a new catalog is downloaded if the cached one has changed or does
+     * not exist. If the API can not be reached a stale cached catalog is used instead.
+     *
+     * @param endpoint  The API endpoint to fetch the catalog from.
+     * @param token     An optional API token.
+     * @param cacheFile The file the catalog is cached in.
+     * @param ttl       How long a cached catalog is used before it is revalidated.
+     * @param log       The logger to report problems to.
+     * @return The catalog, or null if it could not be fetched and was not cached.
+     */
+    @Nullable
+    public static GameVersionCatalog load(String endpoint, @Nullable String token, Path cacheFile, Duration ttl, Logger log) {
+
+        final GameVersionCatalog cached = readCache(cacheFile, log);
+        final long now = System.currentTimeMillis();
+
+        if (cached != null && now - cached.fetchedAt < ttl.toMillis()) {
+
+            log.debug("Using game versions cached at {}.", cached.getFetchedAt());
+            return cached;
+        }
+
+        try {
+
+            final HttpURLConnection connection = CurseForgeGradlePlugin.openConnection(endpoint + "/api/game/versions", token);
+
+            if (cached != null && cached.etag != null) {
+
+                connection.setRequestProperty("If-None-Match", cached.etag);
+            }
+
+            final int status = connection.getResponseCode();
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+
+                log.debug("Cached game versions are still current.");
+                cached.fetchedAt = now;
+                writeCache(cacheFile, cached, log);
+                return cached;
+            }
+
+            if (status == HttpURLConnection.HTTP_OK) {
+
+                final List<GameVersion> versions = CurseForgeGradlePlugin.readJson(connection, VERSIONS_TYPE);
+                final GameVersionCatalog catalog = new GameVersionCatalog(connection.getHeaderField("ETag"), now, versions != null ? versions : new ArrayList<>());
+                log.debug("Fetched {} game versions from {}.", catalog.versions.size(), endpoint);
+                writeCache(cacheFile, catalog, log);
+                return catalog;
+            }
+
+            log.warn("Could not fetch game versions from {}. The API responded with status {}.", endpoint, status);
+        }
+
+        catch (IOException | URISyntaxException | JsonParseException e) {
+
+            log.warn("Could not fetch game versions from {}.", endpoint, e);
+        }
+
+        if (cached != null) {
+
+            log.warn("Using game versions cached at {}.", cached.getFetchedAt());
+        }
+
+        return cached;
+    }
+
+    /**
+     * Reads a cached catalog from disk.
+     *
+     * @param cacheFile The file the catalog is cached in.
+     * @param log       The logger to report problems to.
+     * @return The cached catalog, or null if it does not exist or could not be read.
+     */
+    @Nullable
+    public static GameVersionCatalog readCache(Path cacheFile, Logger log) {
+
+        return JsonFiles.read(cacheFile, GameVersionCatalog.class, log, "game version cache");
+    }
+
+    private static void writeCache(Path cacheFile, GameVersionCatalog catalog, Logger log) {
+
+        try {
+
+            JsonFiles.writeAtomically(cacheFile, catalog, GameVersionCatalog.class);
+        }
+
+        catch (IOException e) {
+
+            log.warn("Could not write game version cache {}.", cacheFile, e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package net.darkhax.curseforgegradle;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes how versions for a CurseForge game are detected from the build environment. Implementations are found
+ * using {@link java.util.ServiceLoader}, so a module can add support for another game by listing its detector in
+ * {@code META-INF/services/net.darkhax.curseforgegradle.GameVersionDetector} and being added to the build script
+ * classpath. Detectors only describe what to look for. The project is inspected once by the
+ * {@link VersionDetectionExtension}, using an index built from every detector.
+ */
+public interface GameVersionDetector {
+
+    /**
+     * Gets the name of the game the detector supports. This is only used for logging.
+     *
+     * @return The name of the game.
+     */
+    String getGame();
+
+    /**
+     * Gets the IDs of plugins that imply a game version, and the version each one implies. This is commonly used for
+     * mod loaders.
+     *
+     * @return A map of plugin IDs to game versions.
+     */
+    Map<String, String> getPluginVersions();
+
+    /**
+     * Gets the names of project properties that hold a game version.
+     *
+     * @return The names of the properties.
+     */
+    Set<String> getVersionProperties();
+
+    /**
+     * Checks if the Java language version of the toolchain should be detected as a game version, using the format
+     * {@code Java <version>}.
+     *
+     * @return True if the Java version should be detected.
+     */
+    default boolean detectsJavaVersion() {
+
+        return false;
+    }
+
+    /**
+     * Gets the mod loaders whose files must define a Client or Server environment.
+     *
+     * @return The mod loaders that require an environment.
+     */
+    default Set<String> getEnvironmentLoaders() {
+
+        return Set.of();
+    }
+}
@@ -0,0 +1,85 @@
+package net.darkhax.curseforgegradle;
+
+import com.google.gson.JsonParseException;
+import org.gradle.api.logging.Logger;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers for the small JSON files the plugin keeps on disk between builds.
+ */
+public final class JsonFiles {
+
+    private JsonFiles() {
+
+    }
+
+    /**
+     * Reads a JSON file if it exists. Files that can not be read or parsed are reported and treated as missing, as the
+     * plugin only uses them as caches.
+     *
+     * @param file        The file to read.
+     * @param type        The type of the value stored in the file.
+     * @param log         The logger to report problems to.
+     * @param description A short description of the file used in log messages.
+     * @param <T>         The type of the value stored in the file.
+     * @return The value read from the file, or null if the file does not exist or could not be read.
+     */
+    @Nullable
+    public static <T> T read(Path file, Type type, Logger log, String description) {
+
+        if (Files.isRegularFile(file)) {
+
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+
+                return Constants.GSON.fromJson(reader, type);
+            }
+
+            catch (IOException | JsonParseException e) {
+
+                log.warn("Could not read {} {}. It will be recreated.", description, file, e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a value to a JSON file. The value is written to a unique temporary file first and then moved into place,
+     * so a build that is interrupted while writing will not leave a corrupt file behind, and builds that write the same
+     * file at the same time do not interfere with each other.
+     *
+     * @param file  The file to write.
+     * @param value The value to write.
+     * @param type  The type of the value.
+     * @throws IOException If the file could not be written.
+     */
+    public static void writeAtomically(Path file, Object value, Type type) throws IOException {
+
+        Files.createDirectories(file.getParent());
+        final Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+        try {
+
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+
+                Constants.PRETTY_GSON.toJson(value, type, writer);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        finally {
+
+            Files.deleteIfExists(temp);
+        }
+    }
+}
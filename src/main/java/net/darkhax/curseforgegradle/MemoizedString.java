@@ -0,0 +1,61 @@
+package net.darkhax.curseforgegradle;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+
+/**
+ * Resolves a value using {@link TaskPublishCurseForge#parseString(Object)} the first time it is needed and remembers the
+ * result. Changelogs are often created by closures that run commands or read large files, and the same provider is
+ * shared by an artifact, its additional files, and every file of a batch. Remembering the result ensures the value is
+ * only resolved once per build, even when it is queried from several threads during validation.
+ */
+final class MemoizedString implements Callable<String> {
+
+    /**
+     * The value to resolve. This is released once the value has been resolved.
+     */
+    @Nullable
+    private Object source;
+
+    /**
+     * The resolved value.
+     */
+    @Nullable
+    private volatile String value;
+
+    /**
+     * Whether the value has been resolved. The resolved value may be null.
+     */
+    private volatile boolean resolved;
+
+    /**
+     * Creates a new memoized value.
+     *
+     * @param source The value to resolve.
+     */
+    MemoizedString(@Nullable Object source) {
+
+        this.source = source;
+    }
+
+    @Override
+    @Nullable
+    public String call() {
+
+        if (!this.resolved) {
+
+            synchronized (this) {
+
+                if (!this.resolved) {
+
+                    // If the value can not be resolved the exception is thrown to the caller and the next call tries again.
+                    this.value = TaskPublishCurseForge.parseString(this.source);
+                    this.source = null;
+                    this.resolved = true;
+                }
+            }
+        }
+
+        return this.value;
+    }
+}
@@ -0,0 +1,71 @@
+package net.darkhax.curseforgegradle;
+
+import org.apache.groovy.util.Maps;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detects the Minecraft version, mod loader, and Java version of a Minecraft mod.
+ */
+public final class MinecraftVersionDetector implements GameVersionDetector {
+
+    /**
+     * A map of well known plugins and the versions they are associated with. This is used to automatically detect
+     * them.
+     */
+    private static final Map<String, String> WELL_KNOWN_PLUGINS = Maps.of(
+            "net.minecraftforge.gradle", "Forge",
+            "fabric-loom", "Fabric",
+            "org.quiltmc.loom", "Quilt",
+            "net.neoforged.gradle", "NeoForge",
+            "net.neoforged.gradle.userdev", "NeoForge",
+            "net.neoforged.moddev", "NeoForge"
+    );
+
+    /**
+     * A set of well known properties that hold the Minecraft version.
+     */
+    private static final Set<String> WELL_KNOWN_PROPERTIES = Set.of(
+            "MC_VERSION",
+            "minecraft_version",
+            "mc_version",
+            "mcVersion",
+            "minecraftVersion"
+    );
+
+    /**
+     * The mod loaders whose files must define an environment.
+     */
+    private static final Set<String> LOADERS = Set.of("Fabric", "Forge", "NeoForge", "Quilt");
+
+    @Override
+    public String getGame() {
+
+        return "Minecraft";
+    }
+
+    @Override
+    public Map<String, String> getPluginVersions() {
+
+        return WELL_KNOWN_PLUGINS;
+    }
+
+    @Override
+    public Set<String> getVersionProperties() {
+
+        return WELL_KNOWN_PROPERTIES;
+    }
+
+    @Override
+    public boolean detectsJavaVersion() {
+
+        return true;
+    }
+
+    @Override
+    public Set<String> getEnvironmentLoaders() {
+
+        return LOADERS;
+    }
+}
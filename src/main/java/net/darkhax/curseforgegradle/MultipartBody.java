@@ -0,0 +1,177 @@
+package net.darkhax.curseforgegradle;
+
+import com.google.gson.stream.JsonWriter;
+import net.darkhax.curseforgegradle.api.metadata.Metadata;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Builds the multipart/form-data body used by the CurseForge upload API. The body is made up of a small in-memory
+ * preamble containing the metadata part, the raw bytes of the file being uploaded, and a small in-memory epilogue that
+ * closes the request. The file itself is streamed from disk as the request is sent, so the memory required to upload
+ * an artifact does not grow with the size of the artifact.
+ */
+public final class MultipartBody {
+
+    /**
+     * The boundary used to separate each part of the body.
+     */
+    private final String boundary;
+
+    /**
+     * The encoded metadata part and the header of the file part.
+     */
+    private final byte[] preamble;
+
+    /**
+     * The file being uploaded.
+     */
+    private final Path file;
+
+    /**
+     * The encoded terminator of the file part and the closing boundary.
+     */
+    private final byte[] epilogue;
+
+    /**
+     * Creates a new multipart body for an upload request.
+     *
+     * @param metadataJson The JSON metadata for the upload.
+     * @param file         The file to upload.
+     */
+    public MultipartBody(String metadataJson, Path file) {
+
+        this(file, out -> out.write(metadataJson.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Creates a new multipart body for an upload request. The metadata is serialized directly into the body, without
+     * creating an intermediate JSON string.
+     *
+     * @param metadata The metadata for the upload.
+     * @param file     The file to upload.
+     */
+    public MultipartBody(Metadata metadata, Path file) {
+
+        this(file, out -> writeMetadata(out, metadata));
+    }
+
+    /**
+     * Creates a new multipart body for an upload request.
+     *
+     * @param file     The file to upload.
+     * @param metadata Writes the JSON metadata for the upload.
+     */
+    private MultipartBody(Path file, PartWriter metadata) {
+
+        this.boundary = "----JavaBoundary" + UUID.randomUUID();
+        this.file = file;
+
+        final ByteArrayOutputStream preamble = new ByteArrayOutputStream(1024);
+
+        try {
+
+            // Metadata
+            preamble.write(("--" + this.boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"metadata\"\r\n"
+                    + "Content-Type: application/json\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            metadata.write(preamble);
+
+            // File part
+            preamble.write(("\r\n--" + this.boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"" + file.getFileName() + "\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        catch (IOException e) {
+
+            // The preamble is written to memory, so this is only reached if the metadata could not be serialized.
+            throw new UncheckedIOException(e);
+        }
+
+        this.preamble = preamble.toByteArray();
+
+        // End boundary
+        this.epilogue = ("\r\n--" + this.boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the JSON metadata for an upload to a stream, without creating an intermediate JSON string.
+     *
+     * @param out      The stream to write to. The stream is flushed but not closed.
+     * @param metadata The metadata for the upload.
+     * @throws IOException If the metadata could not be written.
+     */
+    static void writeMetadata(OutputStream out, Metadata metadata) throws IOException {
+
+        final JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Constants.GSON.getAdapter(Metadata.class).write(writer, metadata);
+        writer.flush();
+    }
+
+    /**
+     * Gets the value of the Content-Type header that must be sent with this body.
+     *
+     * @return The Content-Type header value.
+     */
+    public String getContentType() {
+
+        return "multipart/form-data; boundary=" + this.boundary;
+    }
+
+    /**
+     * Creates a publisher that streams the body to the server. The preamble and epilogue are sent from memory while
+     * the file is read from disk in small chunks. Each part has a known length, so the publisher reports an exact
+     * Content-Length for the full request.
+     *
+     * @return A publisher for the request body.
+     * @throws FileNotFoundException If the file no longer exists.
+     */
+    public HttpRequest.BodyPublisher publisher() throws FileNotFoundException {
+
+        return this.publisher(null);
+    }
+
+    /**
+     * Creates a publisher that streams the body to the server, passing the contents of the file to an observer as they
+     * are sent. This allows work such as hashing the file to happen in the same pass that uploads it.
+     *
+     * @param fileObserver An optional observer for the contents of the file.
+     * @return A publisher for the request body.
+     * @throws FileNotFoundException If the file no longer exists.
+     */
+    public HttpRequest.BodyPublisher publisher(@Nullable ObservingBodyPublisher.Observer fileObserver) throws FileNotFoundException {
+
+        final HttpRequest.BodyPublisher filePublisher = HttpRequest.BodyPublishers.ofFile(this.file);
+
+        return HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofByteArray(this.preamble),
+                fileObserver != null ? new ObservingBodyPublisher(filePublisher, fileObserver) : filePublisher,
+                HttpRequest.BodyPublishers.ofByteArray(this.epilogue)
+        );
+    }
+
+    /**
+     * Writes the contents of a part to the body.
+     */
+    private interface PartWriter {
+
+        /**
+         * Writes the contents of the part.
+         *
+         * @param out The stream to write to.
+         * @throws IOException If the part could not be written.
+         */
+        void write(OutputStream out) throws IOException;
+    }
+}
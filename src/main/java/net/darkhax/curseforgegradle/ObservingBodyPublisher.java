@@ -0,0 +1,102 @@
+package net.darkhax.curseforgegradle;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+
+/**
+ * A body publisher that passes every chunk of a wrapped publisher to an {@link Observer} as it is sent. The observer
+ * sees a read-only view of each chunk and can not change the data that is sent. A new subscription is made for every
+ * attempt to send the request, so observers are told when a subscription starts and can reset their state.
+ */
+public final class ObservingBodyPublisher implements HttpRequest.BodyPublisher {
+
+    /**
+     * Receives the chunks of a body as they are sent.
+     */
+    public interface Observer {
+
+        /**
+         * Called when the body starts being sent. This is called again for each retry of the request.
+         */
+        default void onStart() {
+
+        }
+
+        /**
+         * Called for each chunk of the body before it is sent.
+         *
+         * @param chunk A read-only view of the chunk.
+         */
+        void onChunk(ByteBuffer chunk);
+
+        /**
+         * Called once the whole body has been sent.
+         */
+        default void onComplete() {
+
+        }
+    }
+
+    /**
+     * The publisher being observed.
+     */
+    private final HttpRequest.BodyPublisher delegate;
+
+    /**
+     * The observer that receives each chunk.
+     */
+    private final Observer observer;
+
+    /**
+     * Creates a new observing publisher.
+     *
+     * @param delegate The publisher to observe.
+     * @param observer The observer that receives each chunk.
+     */
+    public ObservingBodyPublisher(HttpRequest.BodyPublisher delegate, Observer observer) {
+
+        this.delegate = delegate;
+        this.observer = observer;
+    }
+
+    @Override
+    public long contentLength() {
+
+        return this.delegate.contentLength();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+
+        this.observer.onStart();
+        this.delegate.subscribe(new Flow.Subscriber<ByteBuffer>() {
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+
+                observer.onChunk(item.asReadOnlyBuffer());
+                subscriber.onNext(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+
+                observer.onComplete();
+                subscriber.onComplete();
+            }
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package net.darkhax.curseforgegradle;
+
+import org.gradle.api.Action;
+import org.gradle.api.logging.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the bytes of a request body as they are sent and reports progress to a list of listeners. Events are
+ * throttled to a byte interval and a time interval, so the work done for each chunk of the body is a counter update
+ * and a comparison. Listeners are called on the thread that sends the body and should return quickly.
+ */
+final class ProgressTracker implements ObservingBodyPublisher.Observer {
+
+    /**
+     * The name of the file being uploaded.
+     */
+    private final String fileName;
+
+    /**
+     * The listeners to report progress to.
+     */
+    private final List<Action<? super UploadProgress>> listeners;
+
+    /**
+     * The number of bytes that must be sent before another event is fired.
+     */
+    private final long intervalBytes;
+
+    /**
+     * The time that must pass before another event is fired, in nanoseconds.
+     */
+    private final long intervalNanos;
+
+    /**
+     * The logger used to report listeners that fail.
+     */
+    private final Logger log;
+
+    /**
+     * The total size of the body, or -1 if it is not known.
+     */
+    private long totalBytes = -1;
+
+    /**
+     * The number of times the body has started being sent.
+     */
+    private int attempt;
+
+    /**
+     * The time the current attempt started sending the body.
+     */
+    private long startNanos;
+
+    /**
+     * The number of bytes sent by the current attempt.
+     */
+    private long bytesSent;
+
+    /**
+     * The byte count at which the next event is fired.
+     */
+    private long nextEventBytes;
+
+    /**
+     * The time at which the next event is fired.
+     */
+    private long nextEventNanos;
+
+    /**
+     * Creates a new progress tracker.
+     *
+     * @param fileName       The name of the file being uploaded.
+     * @param listeners      The listeners to report progress to.
+     * @param intervalBytes  The number of bytes between events. Values of 0 or less disable the byte interval.
+     * @param intervalMillis The number of milliseconds between events. Values of 0 or less disable the time interval.
+     * @param log            The logger used to report listeners that fail.
+     */
+    ProgressTracker(String fileName, List<Action<? super UploadProgress>> listeners, long intervalBytes, long intervalMillis, Logger log) {
+
+        this.fileName = fileName;
+        this.listeners = listeners;
+        this.intervalBytes = intervalBytes > 0 ? intervalBytes : Long.MAX_VALUE;
+        this.intervalNanos = intervalMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(intervalMillis) : Long.MAX_VALUE;
+        this.log = log;
+    }
+
+    /**
+     * Sets the total size of the body being tracked.
+     *
+     * @param totalBytes The total size of the body, or -1 if it is not known.
+     */
+    void setTotalBytes(long totalBytes) {
+
+        this.totalBytes = totalBytes;
+    }
+
+    @Override
+    public void onStart() {
+
+        this.attempt++;
+        this.startNanos = System.nanoTime();
+        this.bytesSent = 0;
+        this.nextEventBytes = this.intervalBytes;
+        this.nextEventNanos = this.intervalNanos == Long.MAX_VALUE ? Long.MAX_VALUE : this.startNanos + this.intervalNanos;
+    }
+
+    /**
+     * Starts a new attempt that resumes from part of the way through the body. This is used by chunked uploads, where
+     * the bytes the server has already acknowledged are not sent again.
+     *
+     * @param bytesAcknowledged The number of bytes the server has already received.
+     */
+    void onResume(long bytesAcknowledged) {
+
+        this.onStart();
+        this.bytesSent = bytesAcknowledged;
+        this.nextEventBytes = this.intervalBytes == Long.MAX_VALUE ? Long.MAX_VALUE : bytesAcknowledged + this.intervalBytes;
+    }
+
+    @Override
+    public void onChunk(ByteBuffer chunk) {
+
+        this.bytesSent += chunk.remaining();
+
+        if (this.bytesSent >= this.nextEventBytes || (this.nextEventNanos != Long.MAX_VALUE && System.nanoTime() >= this.nextEventNanos)) {
+
+            final long now = System.nanoTime();
+            this.nextEventBytes = this.intervalBytes == Long.MAX_VALUE ? Long.MAX_VALUE : this.bytesSent + this.intervalBytes;
+            this.nextEventNanos = this.intervalNanos == Long.MAX_VALUE ? Long.MAX_VALUE : now + this.intervalNanos;
+            this.fire(now, false);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+
+        this.fire(System.nanoTime(), true);
+    }
+
+    /**
+     * Reports the current progress to every listener.
+     *
+     * @param now      The current time.
+     * @param complete Whether the whole body has been sent.
+     */
+    private void fire(long now, boolean complete) {
+
+        final UploadProgress progress = new UploadProgress(this.fileName, this.bytesSent, this.totalBytes, now - this.startNanos, this.attempt, complete);
+
+        for (Action<? super UploadProgress> listener : this.listeners) {
+
+            try {
+
+                listener.execute(progress);
+            }
+
+            catch (RuntimeException e) {
+
+                this.log.warn("Upload progress listener for {} failed.", this.fileName, e);
+            }
+        }
+    }
+}
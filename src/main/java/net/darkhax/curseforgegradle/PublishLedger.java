@@ -0,0 +1,125 @@
+package net.darkhax.curseforgegradle;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A local record of the files that have been published by a task. Each entry is keyed by the CurseForge project ID,
+ * the hash of the file contents, and the hash of the upload metadata. When a task is run again after a partial failure
+ * the files that were already published are skipped and their existing file IDs are reused, rather than being
+ * uploaded a second time.
+ */
+public final class PublishLedger {
+
+    /**
+     * The type of the map stored in the ledger file.
+     */
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+
+    /**
+     * The file the ledger is persisted to.
+     */
+    private final Path file;
+
+    /**
+     * The published files, keyed by their ledger key.
+     */
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Creates a new ledger backed by the given file. Existing entries are loaded from the file if it exists.
+     *
+     * @param file The file the ledger is persisted to.
+     * @param log  The logger to report problems to.
+     */
+    public PublishLedger(Path file, Logger log) {
+
+        this.file = file;
+
+        final Map<String, Entry> loaded = JsonFiles.read(file, ENTRIES_TYPE, log, "publish ledger");
+
+        if (loaded != null) {
+
+            this.entries.putAll(loaded);
+        }
+    }
+
+    /**
+     * Gets the ID of a file that has already been published.
+     *
+     * @param key The ledger key of the file.
+     * @return The CurseForge file ID, or null if the file has not been published.
+     */
+    @Nullable
+    public synchronized Long getFileId(String key) {
+
+        final Entry entry = this.entries.get(key);
+        return entry != null ? entry.fileId : null;
+    }
+
+    /**
+     * Records a file that has been published and writes the ledger to disk.
+     *
+     * @param key      The ledger key of the file.
+     * @param fileId   The ID CurseForge assigned to the file.
+     * @param fileName The name of the published file.
+     */
+    public synchronized void record(String key, long fileId, String fileName) {
+
+        this.entries.put(key, new Entry(fileId, fileName, System.currentTimeMillis()));
+
+        try {
+
+            JsonFiles.writeAtomically(this.file, this.entries, ENTRIES_TYPE);
+        }
+
+        catch (IOException e) {
+
+            throw new GradleException("Could not write publish ledger " + this.file + ".", e);
+        }
+    }
+
+    /**
+     * A single published file in the ledger.
+     */
+    private static final class Entry {
+
+        /**
+         * The ID CurseForge assigned to the file.
+         */
+        @Expose
+        @SerializedName("fileId")
+        private long fileId;
+
+        /**
+         * The name of the published file.
+         */
+        @Expose
+        @SerializedName("fileName")
+        private String fileName;
+
+        /**
+         * The time the file was published, in milliseconds since the epoch.
+         */
+        @Expose
+        @SerializedName("publishedAt")
+        private long publishedAt;
+
+        private Entry(long fileId, String fileName, long publishedAt) {
+
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package net.darkhax.curseforgegradle;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Determines if and when a failed upload should be attempted again. Delays grow exponentially from a base delay, have
+ * a random amount of jitter added to avoid many clients retrying at the same moment, and can be extended by the
+ * Retry-After header sent by the API.
+ */
+public final class RetryPolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The HTTP status codes and CurseForge error codes that are considered transient by default. These are timeouts,
+     * rate limits, and server errors that are likely to succeed if the request is sent again.
+     */
+    public static final Set<Integer> DEFAULT_RETRYABLE_CODES = Set.of(408, 425, 429, 500, 502, 503, 504);
+
+    /**
+     * The upper limit for the delay between two attempts, unless the server asks for a longer delay.
+     */
+    private static final long MAX_BACKOFF_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    /**
+     * The upper limit for a delay requested by the server through the Retry-After header.
+     */
+    private static final long MAX_RETRY_AFTER_MILLIS = Duration.ofMinutes(10).toMillis();
+
+    /**
+     * The total number of times a request may be sent, including the first attempt.
+     */
+    private final int maxAttempts;
+
+    /**
+     * The delay before the first retry. Each following retry doubles this delay.
+     */
+    private final long baseDelayMillis;
+
+    /**
+     * The fraction of the delay that may be randomly added to it.
+     */
+    private final double jitter;
+
+    /**
+     * Determines if the Retry-After header sent by the server is honored.
+     */
+    private final boolean honorRetryAfter;
+
+    /**
+     * The HTTP status codes and CurseForge error codes that should be retried.
+     */
+    private final Set<Integer> retryableCodes;
+
+    /**
+     * Creates a new retry policy.
+     *
+     * @param maxAttempts     The total number of times a request may be sent.
+     * @param baseDelayMillis The delay before the first retry.
+     * @param jitter          The fraction of the delay that may be randomly added to it.
+     * @param honorRetryAfter Whether the Retry-After header should be honored.
+     * @param retryableCodes  The codes that should be retried.
+     * @throws IllegalArgumentException If the base delay is negative.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, double jitter, boolean honorRetryAfter, Set<Integer> retryableCodes) {
+
+        if (baseDelayMillis < 0) {
+
+            throw new IllegalArgumentException("The retry delay must not be negative. Found " + baseDelayMillis + "ms.");
+        }
+
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelayMillis;
+        this.jitter = Math.max(0d, jitter);
+        this.honorRetryAfter = honorRetryAfter;
+        this.retryableCodes = Set.copyOf(retryableCodes);
+    }
+
+    /**
+     * Gets the total number of times a request may be sent, including the first attempt.
+     *
+     * @return The maximum number of attempts.
+     */
+    public int getMaxAttempts() {
+
+        return this.maxAttempts;
+    }
+
+    /**
+     * Checks if another attempt is allowed after the given attempt has failed.
+     *
+     * @param attempt The attempt that failed, starting at 1.
+     * @return Whether the request may be sent again.
+     */
+    public boolean canRetry(int attempt) {
+
+        return attempt < this.maxAttempts;
+    }
+
+    /**
+     * Checks if a response from the API represents a transient failure. Both the HTTP status and the error code from
+     * the response body are checked, as CurseForge does not always send a meaningful status.
+     *
+     * @param statusCode The HTTP status code of the response.
+     * @param errorCode  The error code from the response body. This is the status code when no body was sent.
+     * @return Whether the failure is retryable.
+     */
+    public boolean isRetryable(int statusCode, int errorCode) {
+
+        return this.retryableCodes.contains(statusCode) || this.retryableCodes.contains(errorCode);
+    }
+
+    /**
+     * Calculates how long to wait before the next attempt.
+     *
+     * @param attempt    The attempt that failed, starting at 1.
+     * @param retryAfter The value of the Retry-After header, if one was sent.
+     * @return The delay in milliseconds.
+     */
+    public long getDelayMillis(int attempt, Optional<String> retryAfter) {
+
+        // The base delay is clamped before it is doubled, so large delays can not overflow into a negative value.
+        final long backoff = Math.min(MAX_BACKOFF_MILLIS, Math.min(MAX_BACKOFF_MILLIS, this.baseDelayMillis) << Math.min(attempt - 1, 20));
+        long delay = backoff + (long) Math.min(MAX_BACKOFF_MILLIS, backoff * this.jitter * ThreadLocalRandom.current().nextDouble());
+
+        if (this.honorRetryAfter && retryAfter.isPresent()) {
+
+            delay = Math.max(delay, Math.min(MAX_RETRY_AFTER_MILLIS, parseRetryAfter(retryAfter.get())));
+        }
+
+        return delay;
+    }
+
+    /**
+     * Parses the value of a Retry-After header. The header can either be a number of seconds or an HTTP date.
+     *
+     * @param value The header value.
+     * @return The requested delay in milliseconds, or 0 if the value could not be parsed.
+     */
+    private static long parseRetryAfter(String value) {
+
+        try {
+
+            return Duration.ofSeconds(Long.parseLong(value.trim())).toMillis();
+        }
+
+        catch (NumberFormatException e) {
+
+            try {
+
+                return Math.max(0, Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis());
+            }
+
+            catch (DateTimeParseException ignored) {
+
+                return 0;
+            }
+        }
+    }
+}
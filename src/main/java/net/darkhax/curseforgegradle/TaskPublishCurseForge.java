@@ -1,28 +1,48 @@
 package net.darkhax.curseforgegradle;
 
+import com.google.gson.reflect.TypeToken;
 import groovy.lang.Closure;
 import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.Task;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A Gradle task that can publish multiple files to CurseForge. A project can define any number of these tasks, and any
@@ -31,9 +51,9 @@ import java.util.List;
 public abstract class TaskPublishCurseForge extends DefaultTask {
 
     /**
-     * The display name of the project that defined this task.
+     * The type of the list stored in the upload report.
      */
-    private final String projectDisplayName = this.getProject().getDisplayName();
+    private static final Type REPORT_TYPE = new TypeToken<List<UploadMetrics>>() {}.getType();
 
     /**
      * An internal logger instance used to print warnings, errors, and debug information. The logger name includes the
@@ -43,43 +63,175 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
 
     /**
      * Handles the automatic discovery of game version tags from variables in the Gradle environment. If this is not
-     * disabled detected versions will be applied in {@link #initialize()}.
+     * disabled detected versions will be applied in {@link #initialize(List)}.
      */
     private final VersionDetector versionDetector;
 
     /**
      * An internal list of all top-level artifacts that this task should publish. New artifacts are added to this list
      * by using {@link #upload(Object, Object)} during the task configuration phase. These artifacts will be published
-     * to CurseForge during the {@link #publish()} step.
+     * to CurseForge during the {@link #publish(List)} step.
      */
     private final List<UploadArtifact> uploadArtifacts = new LinkedList<>();
 
     /**
-     * The game specific API endpoint. This is used to retrieve lists of valid versions for a game and to help files get
-     * uploaded to the right game.
+     * An internal list of batches of files that this task should publish. New batches are added to this list by using
+     * {@link #uploadAll(Object, Object, Action)}. Each batch is expanded into one artifact per file when the task is
+     * executed.
      */
-    public Object apiEndpoint = "https://legacy.curseforge.com";
+    private final List<UploadBatch> uploadBatches = new LinkedList<>();
 
     /**
-     * The API token used to publish files on your behalf. This token must have the correct project permissions for the
-     * files to be published. These tokens can be generated here: https://legacy.curseforge.com/account/api-tokens
+     * Listeners that receive progress events for every file uploaded by this task. New listeners are added by using
+     * {@link #onProgress(Action)}.
      */
-    public Object apiToken;
+    private final List<Action<? super UploadProgress>> progressListeners = new ArrayList<>();
 
     /**
      * Determines if publishing should actually happen. Set this to {@code true} to log the json request instead of sending it to curse's servers.
      */
     public boolean debugMode;
 
+    /**
+     * The maximum number of uploads this task may have in flight at once. Top-level artifacts are independent of each
+     * other and can be published concurrently, while additional files are started as soon as their parent has been
+     * published. Uploads are sent asynchronously, so this does not change the number of threads used. The default
+     * value of 1 publishes every file one after another. Uploads are also subject to the build wide limit of the
+     * {@link CurseForgeUploadService}.
+     */
+    public int maxConcurrentUploads = 1;
+
+    /**
+     * The maximum number of seconds to wait for a connection to the API to be established. A value of 0 or less
+     * disables the timeout.
+     */
+    public long connectTimeoutSeconds = 30;
+
+    /**
+     * The maximum number of seconds to wait for a single upload request to complete, including the time spent sending
+     * the file. A value of 0 or less disables the timeout, which is the default as large files can take a long time to
+     * send.
+     */
+    public long requestTimeoutSeconds = 0;
+
+    /**
+     * Determines if HTTP/2 should be negotiated with the API. This allows uploads to share a single connection. The
+     * client will fall back to HTTP/1.1 if the server does not support HTTP/2.
+     */
+    public boolean preferHttp2 = true;
+
+    /**
+     * The total number of times an upload may be attempted before the task fails. Uploads are only attempted again
+     * when the connection fails or the API responds with one of the {@link #retryableErrorCodes}.
+     */
+    public int maxUploadAttempts = 3;
+
+    /**
+     * The number of milliseconds to wait before the first retry. The delay is doubled for each following retry.
+     */
+    public long retryDelayMillis = 2000;
+
+    /**
+     * The fraction of the retry delay that may be randomly added to it. This prevents many builds that failed at the
+     * same time from retrying at the same time.
+     */
+    public double retryJitter = 0.5;
+
+    /**
+     * Determines if the Retry-After header sent by the API is honored when it asks for a longer delay.
+     */
+    public boolean honorRetryAfter = true;
+
+    /**
+     * The HTTP status codes and CurseForge error codes that are considered transient. Any other error will fail the
+     * upload immediately.
+     */
+    public Set<Integer> retryableErrorCodes = new HashSet<>(RetryPolicy.DEFAULT_RETRYABLE_CODES);
+
+    /**
+     * The size in bytes of each chunk when large files are uploaded using a resumable upload session. Files larger
+     * than one chunk are split into chunks, and a failed chunk resumes from the last byte the API acknowledged instead
+     * of starting over. If the API does not support resumable uploads the file is uploaded in a single request. A value
+     * of 0 or less disables chunked uploads, which is the default.
+     */
+    public long uploadChunkSize = 0;
+
+    /**
+     * Determines if files that were already published by a previous run of this task should be skipped. Published
+     * files are recorded in the {@link #getLedgerFile() ledger file} along with a hash of their contents and metadata.
+     * When a file is skipped its existing CurseForge file ID is reused, including as the parent of additional files.
+     * This is disabled by default, so running the task again publishes the files again. Files are only recorded in the
+     * ledger while this is enabled.
+     */
+    public boolean skipPublishedFiles = false;
+
+    /**
+     * The number of bytes that must be sent before another progress event is fired for an upload. A value of 0 or less
+     * disables the byte interval, which is the default.
+     */
+    public long progressIntervalBytes = 0;
+
+    /**
+     * The number of milliseconds that must pass before another progress event is fired for an upload. A value of 0 or
+     * less disables the time interval.
+     */
+    public long progressIntervalMillis = 10_000;
+
+    /**
+     * Determines if upload progress is logged at the lifecycle level. This keeps long uploads from looking hung, for
+     * example to CI systems that stop jobs which have not printed any output for a while.
+     */
+    public boolean logProgress = true;
+
+    /**
+     * Determines if game versions are checked against the versions known to CurseForge before anything is uploaded.
+     * The known versions are fetched from the API and cached in the Gradle user home, see
+     * {@link #getGameVersionCacheFile()}. This is disabled by default, as it adds a request to the API before publishing
+     * and fails the task for any version the catalog does not list.
+     */
+    public boolean validateGameVersions = false;
+
+    /**
+     * The number of hours a cached list of game versions is used before it is checked for changes. The list is only
+     * downloaded again if it has changed.
+     */
+    public long gameVersionCacheHours = 24;
+
+    /**
+     * Determines if the task runs without network access. When {@link #validateGameVersions} is enabled, game versions
+     * are checked against the last cached list of versions in offline mode, and the task fails if that list is missing
+     * or older than {@link #offlineMaxCacheAgeHours}. Files can only be published offline with {@link #debugMode}. This
+     * defaults to true when Gradle is run with --offline.
+     */
+    public boolean offline;
+
+    /**
+     * The maximum age in hours of the cached game versions used in offline mode.
+     */
+    public long offlineMaxCacheAgeHours = 24 * 7;
+
     /**
      * This task should not be constructed manually. It will be constructed dynamically by Gradle when a user defines
      * the task. Code inside the constructor will be executed before the user configuration.
      */
     public TaskPublishCurseForge() {
 
-        this.log = Logging.getLogger("CurseForgeGradle/" + projectDisplayName + "/" + this.getName());
+        this.log = Logging.getLogger("CurseForgeGradle/" + this.getProject().getDisplayName() + "/" + this.getName());
+        this.offline = this.getProject().getGradle().getStartParameter().isOffline();
+        this.getApiEndpoint().convention("https://legacy.curseforge.com");
+        this.getLedgerFile().convention(this.getProjectLayout().getBuildDirectory().file("curseforge/" + this.getName() + "-ledger.json"));
+        this.getDigestCacheFile().convention(this.getProjectLayout().getBuildDirectory().file("curseforge/digests.json"));
+        final File gradleUserHome = this.getProject().getGradle().getGradleUserHomeDir();
+        this.getGameVersionCacheFile().convention(this.getProjectLayout().file(this.getApiEndpoint().map(endpoint -> new File(gradleUserHome, "caches/curseforgegradle/game-versions-" + Digests.toHex(Digests.sha256().digest(endpoint.getBytes(StandardCharsets.UTF_8))).substring(0, 16) + ".json"))));
+        this.getReportFile().convention(this.getProjectLayout().getBuildDirectory().file("reports/curseforge/" + this.getName() + ".json"));
         this.versionDetector = new VersionDetector(this.getProject(), this.log);
 
+        // Uploads are executed by the shared upload service, which limits how many uploads can happen at once across
+        // every publish task in the build.
+        final Provider<CurseForgeUploadService> uploadService = CurseForgeUploadService.register(this.getProject());
+        this.getUploadService().set(uploadService);
+        this.usesService(uploadService);
+
         // Ensure publishing takes place after the build task has completed. This is required
         // in some environments such as those with parallel task execution enabled.
         final Task buildTask = this.getProject().getTasks().findByName("build");
@@ -95,11 +247,88 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
         return Collections.unmodifiableList(this.uploadArtifacts);
     }
 
+    @Nested
+    public List<UploadBatch> getUploadBatches() {
+        return Collections.unmodifiableList(this.uploadBatches);
+    }
+
     @Inject
     public abstract ObjectFactory getObjectFactory();
 
+    @Inject
+    public abstract ProviderFactory getProviderFactory();
+
+    @Inject
+    public abstract WorkerExecutor getWorkerExecutor();
+
+    @Inject
+    public abstract ProjectLayout getProjectLayout();
+
+    /**
+     * The file used to record which files have been published by this task. This is used to skip files that were
+     * already published when the task is run again. See {@link #skipPublishedFiles}.
+     *
+     * @return The publish ledger file.
+     */
+    @Internal
+    public abstract RegularFileProperty getLedgerFile();
+
+    /**
+     * The file used to cache the SHA-256 digests of uploaded files between builds. A cached digest is reused while the
+     * size and last modified time of the file are unchanged.
+     *
+     * @return The digest cache file.
+     */
+    @Internal
+    public abstract RegularFileProperty getDigestCacheFile();
+
+    /**
+     * The file the game versions known to CurseForge are cached in. By default this is shared by every build on the
+     * machine that uses the same API endpoint.
+     *
+     * @return The game version cache file.
+     */
+    @Internal
+    public abstract RegularFileProperty getGameVersionCacheFile();
+
+    /**
+     * The file the upload report is written to. The report contains the timing and throughput of every upload made by
+     * the last run of this task, including the bytes sent, time to first byte, upload duration, server response time,
+     * and number of attempts.
+     *
+     * @return The upload report file.
+     */
+    @Internal
+    public abstract RegularFileProperty getReportFile();
+
+    /**
+     * The game specific API endpoint. This is used to retrieve lists of valid versions for a game and to help files get
+     * uploaded to the right game.
+     *
+     * @return The API endpoint property.
+     */
+    @Input
+    public abstract Property<String> getApiEndpoint();
+
+    /**
+     * The API token used to publish files on your behalf. This token must have the correct project permissions for the
+     * files to be published. These tokens can be generated here: https://legacy.curseforge.com/account/api-tokens
+     *
+     * @return The API token property.
+     */
+    @Internal
+    public abstract Property<String> getApiToken();
+
+    /**
+     * The shared service used to execute uploads.
+     *
+     * @return The upload service.
+     */
+    @Internal
+    public abstract Property<CurseForgeUploadService> getUploadService();
+
     /**
-     * Creates a new main level artifact that the plugin will attempt to publish during the {@link #publish()} step.
+     * Creates a new main level artifact that the plugin will attempt to publish during the {@link #publish(List)} step.
      * This method requires the minimum amount of information to define an artifact. Further configuration including
      * defining additional sub files can be done by modifying the returned artifact instance.
      *
@@ -111,13 +340,13 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
      */
     public UploadArtifact upload(Object projectId, Object toUpload) {
 
-        final UploadArtifact artifact = new UploadArtifact(toUpload, parseLong(projectId), getObjectFactory(), this.log, null);
+        final UploadArtifact artifact = new UploadArtifact(toUpload, parseLong(projectId), getObjectFactory(), getProviderFactory(), this.getUploadService(), this.getDigestCacheFile(), this.log, null);
         this.uploadArtifacts.add(artifact);
         return artifact;
     }
 
     /**
-     * Creates a new main level artifact that the plugin will attempt to publish during the {@link #publish()} step.
+     * Creates a new main level artifact that the plugin will attempt to publish during the {@link #publish(List)} step.
      * This method requires the minimum amount of information to define an artifact. Further configuration including
      * defining additional sub files can be done by modifying the returned artifact instance.
      *
@@ -135,6 +364,56 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
         return artifact;
     }
 
+    /**
+     * Publishes every file in a collection to the same project with the same configuration. One artifact is created
+     * for each file when the task is executed, so the collection may contain files produced by other tasks. Directories
+     * are expanded to the files they directly contain. The action configures the shared settings of the files, such as
+     * the changelog and game versions. Additional files are not supported for batch uploads.
+     *
+     * @param projectId The CurseForge project ID to publish the files to.
+     * @param files     The files to upload. This accepts anything that can be resolved by {@link FileCollection}.
+     * @param action    The {@link Action} used to configure the shared settings of the files.
+     * @return An object that represents the batch of files being published.
+     */
+    public UploadBatch uploadAll(Object projectId, Object files, Action<UploadArtifact> action) {
+
+        return this.uploadAll(projectId, files, null, action);
+    }
+
+    /**
+     * Publishes every file in a collection to the same project with the same configuration, deriving additional game
+     * versions from the name of each file. Every capture group of the pattern that matches a file name is added to the
+     * game versions of that file. For example the pattern {@code -mc(\d+\.\d+(?:\.\d+)?)\.jar$} adds 1.21.1 to a
+     * file named {@code mymod-mc1.21.1.jar}. Files that do not match the pattern fail the task.
+     *
+     * @param projectId      The CurseForge project ID to publish the files to.
+     * @param files          The files to upload. This accepts anything that can be resolved by {@link FileCollection}.
+     * @param versionPattern A regular expression used to derive game versions from file names, or null.
+     * @param action         The {@link Action} used to configure the shared settings of the files.
+     * @return An object that represents the batch of files being published.
+     */
+    public UploadBatch uploadAll(Object projectId, Object files, @Nullable String versionPattern, Action<UploadArtifact> action) {
+
+        final UploadArtifact template = new UploadArtifact(files, parseLong(projectId), getObjectFactory(), getProviderFactory(), this.getUploadService(), this.getDigestCacheFile(), this.log, null);
+        action.execute(template);
+
+        final UploadBatch batch = new UploadBatch(template, versionPattern);
+        this.uploadBatches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Adds a listener that receives progress events for every file uploaded by this task. Events are throttled by
+     * {@link #progressIntervalBytes} and {@link #progressIntervalMillis}, and a final event is sent once the whole file
+     * has been sent. Listeners are called on the thread that sends the file and should return quickly.
+     *
+     * @param listener The listener to add.
+     */
+    public void onProgress(Action<? super UploadProgress> listener) {
+
+        this.progressListeners.add(listener);
+    }
+
     /**
      * Disables automatic version detection for all artifacts published through the current task.
      */
@@ -150,18 +429,32 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
     @TaskAction
     public void apply() {
 
-        if (!this.uploadArtifacts.isEmpty()) {
+        // Batches are expanded into one artifact per file now that the files they contain are known. Problems found
+        // while expanding them are reported together with the problems found by the validation step.
+        final List<UploadArtifact> artifacts = new ArrayList<>(this.uploadArtifacts);
+        final List<String> problems = new ArrayList<>();
+
+        for (UploadBatch batch : this.uploadBatches) {
+
+            artifacts.addAll(batch.createArtifacts(problems));
+        }
+
+        if (!artifacts.isEmpty() || !problems.isEmpty()) {
 
             // The execution of this task is split into two steps.
 
             // The initialize step is used to validate the task configuration and request additional data from the API
             // that is required to process the configuration data into a format the API can understand.
-            this.initialize();
+            this.initialize(artifacts);
+
+            // The validation step checks every artifact before anything is sent, so a problem with one artifact can
+            // not leave a release partially published.
+            this.validate(artifacts, problems);
 
-            // The publishing step will iterate through all upload artifacts and publish them to CurseForge one by one.
-            // The child files of an artifact will be uploaded after the parent artifact has been uploaded and the
-            // upload response has been validated.
-            this.publish();
+            // The publishing step will iterate through all upload artifacts and publish them to CurseForge, up to
+            // maxConcurrentUploads at a time. The child files of an artifact will be uploaded after the parent
+            // artifact has been uploaded and the upload response has been validated.
+            this.publish(artifacts);
         }
 
         else {
@@ -172,19 +465,21 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
 
     /**
      * Validates the task configuration and sets up data required for publishing artifacts.
+     *
+     * @param artifacts The top-level artifacts to publish.
      */
-    private void initialize() {
+    private void initialize(List<UploadArtifact> artifacts) {
 
         this.log.debug("Initializing upload task.");
 
         // An API token is required to publish a file.
-        if (apiToken == null) {
+        if (!this.getApiToken().isPresent()) {
 
             this.log.error("No API token was provided. The file could not be published!");
             throw new GradleException("Can not publish to CurseForge. No API token provided!");
         }
 
-        this.log.debug("Task configured to connect to {}", this.apiEndpoint);
+        this.log.debug("Task configured to connect to {}", this.getApiEndpoint().get());
 
         // Handle auto version detection.
         if (this.versionDetector.isEnabled) {
@@ -193,7 +488,7 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
 
             for (String detectedVersion : this.versionDetector.getDetectedVersions()) {
 
-                for (UploadArtifact artifact : this.uploadArtifacts) {
+                for (UploadArtifact artifact : artifacts) {
 
                     artifact.addGameVersion(detectedVersion);
                 }
@@ -201,52 +496,419 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
         }
     }
 
+    /**
+     * Checks the configuration of every artifact and additional file. Configured values are resolved on the task
+     * thread, and the file and game version checks are run in parallel. Every problem that is found is logged, and the
+     * task fails once all artifacts have been checked.
+     *
+     * @param artifacts The top-level artifacts to publish.
+     * @param problems  Problems that were found before validation started. Every problem found by validation is added.
+     */
+    private void validate(List<UploadArtifact> artifacts, List<String> problems) {
+
+        final List<UploadArtifact> allArtifacts = new ArrayList<>();
+
+        for (UploadArtifact artifact : artifacts) {
+
+            allArtifacts.add(artifact);
+            allArtifacts.addAll(artifact.getAdditionalArtifacts());
+        }
+
+        final File cacheFile = this.getGameVersionCacheFile().get().getAsFile();
+        GameVersionCatalog catalog = null;
+
+        if (this.retryDelayMillis < 0) {
+
+            problems.add("The retryDelayMillis property must not be negative. Found " + this.retryDelayMillis + ".");
+        }
+
+        if (this.offline && !this.debugMode) {
+
+            problems.add("Files can not be published in offline mode. Enable debugMode to check the artifacts without publishing them.");
+        }
+
+        // The known game versions are loaded before the artifacts are checked, so typos are found without sending any
+        // files to CurseForge. In offline mode the last cached versions are used, as long as they are recent enough.
+        if (this.validateGameVersions && this.offline) {
+
+            catalog = GameVersionCatalog.readCache(cacheFile.toPath(), this.log);
+
+            if (catalog == null) {
+
+                problems.add("No cached game versions were found at " + cacheFile + ". Run the task once without offline mode to cache them.");
+            }
+
+            else if (catalog.getFetchedAt().isBefore(Instant.now().minus(Duration.ofHours(this.offlineMaxCacheAgeHours)))) {
+
+                problems.add("The cached game versions at " + cacheFile + " were fetched at " + catalog.getFetchedAt() + ", which is older than the offline limit of " + this.offlineMaxCacheAgeHours + " hours. Run the task once without offline mode to update them.");
+            }
+        }
+
+        else if (this.validateGameVersions) {
+
+            catalog = this.getUploadService().get().getGameVersionCatalog(this.getApiEndpoint().get(), this.getApiToken().getOrNull(), cacheFile, Duration.ofHours(this.gameVersionCacheHours), this.log);
+
+            if (catalog == null) {
+
+                this.log.warn("The game versions known to CurseForge could not be loaded. Game versions will not be checked before uploading.");
+            }
+        }
+
+        // Configured values can be closures and providers from the build script, which are not guaranteed to be thread
+        // safe, so they are resolved one artifact at a time on the task thread. Only the checks that read the file
+        // system and the catalog are run in parallel.
+        final List<UploadArtifact.Validation> validations = new ArrayList<>();
+
+        for (UploadArtifact artifact : allArtifacts) {
+
+            validations.add(artifact.resolveForValidation(this.versionDetector));
+        }
+
+        final GameVersionCatalog knownVersions = catalog;
+        problems.addAll(validations.parallelStream()
+                .map(validation -> validation.check(knownVersions))
+                .flatMap(List::stream)
+                .collect(Collectors.toList()));
+
+        if (!problems.isEmpty()) {
+
+            this.log.error("Found {} problem(s) with the artifacts to publish. Nothing has been uploaded.", problems.size());
+
+            for (String problem : problems) {
+
+                this.log.error(" - {}", problem);
+            }
+
+            throw new GradleException("Can not publish to CurseForge. Found " + problems.size() + " problem(s) with the artifacts to publish:\n - " + String.join("\n - ", problems));
+        }
+    }
+
     /**
      * Attempts to publish all configured artifacts through the API.
+     *
+     * @param artifacts The top-level artifacts to publish.
      */
-    private void publish() {
+    private void publish(List<UploadArtifact> artifacts) {
 
-        final String tokenString = parseString(this.apiToken);
-        final String endpointString = parseString(this.apiEndpoint);
+        final String endpointString = this.getApiEndpoint().get();
 
         // Each artifact goes through two steps. The prepare step is used to process the artifact configuration into
         // a format accepted by the API. The second step is the upload step which posts an upload request to the API
-        // and processes the response.
-        for (UploadArtifact artifact : this.uploadArtifacts) {
+        // and processes the response. If debugMode is true, the second step is replaced with logging.
+        for (UploadArtifact artifact : artifacts) {
 
-            uploadArtifact(artifact, endpointString, tokenString);
+            artifact.prepareForUpload(this.versionDetector);
 
             // Handle additional files, sometimes called sub files or child files.
             for (UploadArtifact childArtifact : artifact.getAdditionalArtifacts()) {
 
-                uploadArtifact(childArtifact, endpointString, tokenString);
+                childArtifact.prepareForUpload(this.versionDetector);
+            }
+        }
+
+        // Recompression also runs in debug mode, so the savings can be measured without publishing anything.
+        final Map<UploadArtifact, ArchiveRecompressor.Result> recompressed = this.recompress(artifacts);
+
+        if (this.debugMode) {
+
+            for (UploadArtifact artifact : artifacts) {
+
+                artifact.logUploadMetadata(endpointString);
+
+                for (UploadArtifact childArtifact : artifact.getAdditionalArtifacts()) {
+
+                    childArtifact.logUploadMetadata(endpointString);
+                }
+            }
+
+            return;
+        }
+
+        final CurseForgeUploadService service = this.getUploadService().get();
+        final Map<UploadArtifact, UploadRequest> requests = new LinkedHashMap<>();
+
+        for (UploadArtifact artifact : artifacts) {
+
+            final UploadRequest request = artifact.createUploadRequest(endpointString);
+            requests.put(artifact, request);
+
+            for (UploadArtifact childArtifact : artifact.getAdditionalArtifacts()) {
+
+                final UploadRequest childRequest = childArtifact.createUploadRequest(endpointString);
+                request.addChild(childRequest);
+                requests.put(childArtifact, childRequest);
             }
         }
+
+        recompressed.forEach((artifact, result) -> {
+
+            if (result.getFile() != null) {
+
+                requests.get(artifact).recordRecompression(result.getOriginalSize(), result.getNanos());
+            }
+        });
+
+        // Every artifact is handed to a single work item, which pipelines the uploads through the asynchronous HTTP
+        // client. Top-level artifacts are independent of each other, and up to maxConcurrentUploads files are in flight
+        // at once. The additional files of an artifact are started as soon as that artifact has been published.
+        this.log.debug("Publishing {} artifacts with up to {} uploads in flight.", artifacts.size(), Math.max(1, this.maxConcurrentUploads));
+
+        requests.forEach((artifact, request) -> {
+
+            final List<Action<? super UploadProgress>> listeners = new ArrayList<>(this.progressListeners);
+            listeners.addAll(artifact.getProgressListeners());
+
+            if (this.logProgress) {
+
+                listeners.add(this::logProgress);
+            }
+
+            if (!listeners.isEmpty()) {
+
+                service.trackProgress(request, new ProgressTracker(request.getFile().getName(), listeners, this.progressIntervalBytes, this.progressIntervalMillis, this.log));
+            }
+        });
+
+        final String tokenString = this.getApiToken().get();
+        final RetryPolicy retryPolicy = new RetryPolicy(this.maxUploadAttempts, this.retryDelayMillis, this.retryJitter, this.honorRetryAfter, this.retryableErrorCodes);
+        final WorkQueue queue = this.getWorkerExecutor().noIsolation();
+
+        final List<UploadRequest> topLevelRequests = new ArrayList<>();
+
+        for (UploadArtifact artifact : artifacts) {
+
+            topLevelRequests.add(requests.get(artifact));
+        }
+
+        queue.submit(UploadWorkAction.class, parameters -> {
+
+            parameters.getUploadService().set(this.getUploadService());
+            parameters.getRequests().set(topLevelRequests);
+            parameters.getToken().set(tokenString);
+            parameters.getConnectTimeoutSeconds().set(this.connectTimeoutSeconds);
+            parameters.getRequestTimeoutSeconds().set(this.requestTimeoutSeconds);
+            parameters.getPreferHttp2().set(this.preferHttp2);
+            parameters.getRetryPolicy().set(retryPolicy);
+            parameters.getChunkSize().set(this.uploadChunkSize);
+            parameters.getMaxInFlight().set(this.maxConcurrentUploads);
+            parameters.getDigestCacheFile().set(this.getDigestCacheFile());
+
+            if (this.skipPublishedFiles) {
+
+                parameters.getLedgerFile().set(this.getLedgerFile());
+            }
+            parameters.getLoggerName().set(this.log.getName());
+        });
+
+        // Wait for the uploads to finish so the CurseForge file IDs are available to anything that runs after this
+        // task, such as doLast actions or dependent tasks.
+        try {
+
+            queue.await();
+        }
+
+        finally {
+
+            final List<UploadMetrics> metrics = new ArrayList<>();
+
+            requests.forEach((artifact, request) -> {
+
+                artifact.setCurseFileId(service.takeUploadedFile(request));
+
+                final UploadMetrics uploadMetrics = service.takeMetrics(request);
+
+                if (uploadMetrics != null) {
+
+                    metrics.add(uploadMetrics);
+                }
+            });
+
+            this.report(metrics);
+        }
     }
 
     /**
-     * Each artifact goes through two steps. The prepare step is used to process the artifact configuration into a
-     * format accepted by the API. The second step is the upload step which posts an upload request to the API and
-     * processes the response. If {@link #debugMode} is true, this second step will instead be replaced with logging.
+     * Recompresses every artifact and additional file that has opted in to recompression. Archives are recompressed in
+     * parallel on the common fork-join pool into the temporary directory of the task, and each artifact is switched to
+     * its recompressed copy when that copy is smaller. The size saved and the time spent are logged for each file and
+     * for the whole task.
      *
-     * @param artifact Artifact being uploaded.
-     * @param endpoint The endpoint to upload the file to.
-     * @param token    The CurseForge API token used to authenticate the upload.
+     * @param artifacts The top-level artifacts to publish.
+     * @return The result of recompressing each artifact that opted in.
      */
-    private void uploadArtifact(UploadArtifact artifact, String endpoint, String token) {
+    private Map<UploadArtifact, ArchiveRecompressor.Result> recompress(List<UploadArtifact> artifacts) {
 
-        artifact.prepareForUpload(this.versionDetector);
-        if (debugMode) {
+        final List<UploadArtifact> selected = new ArrayList<>();
 
-            artifact.logUploadMetadata(endpoint);
+        for (UploadArtifact artifact : artifacts) {
+
+            if (artifact.isRecompress()) {
+
+                selected.add(artifact);
+            }
+
+            for (UploadArtifact childArtifact : artifact.getAdditionalArtifacts()) {
+
+                if (childArtifact.isRecompress()) {
+
+                    selected.add(childArtifact);
+                }
+            }
         }
 
-        else {
+        if (selected.isEmpty()) {
+
+            return Collections.emptyMap();
+        }
+
+        final File outputRoot = new File(this.getTemporaryDir(), "recompressed");
+        deleteRecursively(outputRoot);
+
+        final long start = System.nanoTime();
+        final List<ArchiveRecompressor.Result> results = IntStream.range(0, selected.size()).parallel().mapToObj(index -> {
 
-            artifact.beginUpload(endpoint, token);
+            final File source = selected.get(index).getUploadFile();
+
+            try {
+
+                // Each file gets its own directory, so files with the same name do not overwrite each other.
+                return ArchiveRecompressor.recompress(source, Files.createDirectories(new File(outputRoot, String.valueOf(index)).toPath()));
+            }
+
+            catch (IOException e) {
+
+                this.log.warn("Could not recompress {}. The original file will be uploaded.", source.getName(), e);
+                return null;
+            }
+        }).collect(Collectors.toList());
+
+        final long wallMillis = (System.nanoTime() - start) / 1_000_000;
+        final Map<UploadArtifact, ArchiveRecompressor.Result> recompressed = new LinkedHashMap<>();
+        long totalSaved = 0;
+        long totalMillis = 0;
+
+        for (int i = 0; i < selected.size(); i++) {
+
+            final ArchiveRecompressor.Result result = results.get(i);
+
+            if (result == null) {
+
+                continue;
+            }
+
+            final long millis = result.getNanos() / 1_000_000;
+            totalMillis += millis;
+            recompressed.put(selected.get(i), result);
+
+            if (result.getFile() != null) {
+
+                final long saved = result.getOriginalSize() - result.getSize();
+                totalSaved += saved;
+                selected.get(i).replaceUploadFile(result.getFile());
+                this.log.lifecycle("Recompressed {} from {} MB to {} MB, saving {} MB ({}%) in {}ms.", result.getSource().getName(), formatMegabytes(result.getOriginalSize()), formatMegabytes(result.getSize()), formatMegabytes(saved), String.format(Locale.ROOT, "%.1f", saved * 100d / result.getOriginalSize()), millis);
+            }
+
+            else {
+
+                this.log.lifecycle("Recompressing {} did not make it smaller. The original file will be uploaded. Spent {}ms.", result.getSource().getName(), millis);
+            }
+        }
+
+        this.log.lifecycle("Recompression saved {} MB across {} files in {}ms, using {}ms of CPU time.", formatMegabytes(totalSaved), selected.size(), wallMillis, totalMillis);
+        return recompressed;
+    }
+
+    /**
+     * Deletes a file or directory and everything inside it.
+     *
+     * @param file The file or directory to delete.
+     */
+    private void deleteRecursively(File file) {
+
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+
+            for (File child : children) {
+
+                deleteRecursively(child);
+            }
+        }
+
+        if (file.exists() && !file.delete()) {
+
+            this.log.warn("Could not delete {}.", file);
         }
     }
 
+    /**
+     * Logs the progress of an upload. The final event of each upload is not logged, as the result of the upload is
+     * logged once CurseForge has responded.
+     *
+     * @param progress The progress of the upload.
+     */
+    private void logProgress(UploadProgress progress) {
+
+        if (!progress.isComplete()) {
+
+            this.log.lifecycle("Uploading {}: {}% ({} of {} MB) at {} MB/s.", progress.getFileName(), Math.round(progress.getFraction() * 100), formatMegabytes(progress.getBytesSent()), formatMegabytes(progress.getTotalBytes()), String.format(Locale.ROOT, "%.2f", progress.getMegabytesPerSecond()));
+        }
+    }
+
+    /**
+     * Writes the upload report and logs a summary of each upload.
+     *
+     * @param metrics The metrics of each upload that was started.
+     */
+    private void report(List<UploadMetrics> metrics) {
+
+        long totalBytes = 0;
+        long totalMillis = 0;
+        int published = 0;
+
+        for (UploadMetrics upload : metrics) {
+
+            totalBytes += upload.getBytesSent();
+            totalMillis = Math.max(totalMillis, upload.getTotalMillis());
+
+            if (upload.getOutcome() == UploadMetrics.Outcome.UPLOADED) {
+
+                published++;
+                this.log.lifecycle("{}: {} MB in {}ms at {} MB/s. Time to first byte {}ms, server response {}ms, {} attempt(s).", upload.getFileName(), formatMegabytes(upload.getBytesSent()), upload.getUploadMillis(), String.format(Locale.ROOT, "%.2f", upload.getMegabytesPerSecond()), upload.getTimeToFirstByteMillis(), upload.getServerResponseMillis(), upload.getAttempts());
+            }
+
+            else if (upload.getOutcome() == UploadMetrics.Outcome.FAILED) {
+
+                this.log.lifecycle("{}: failed after {} attempt(s) and {}ms.", upload.getFileName(), upload.getAttempts(), upload.getTotalMillis());
+            }
+        }
+
+        final File reportFile = this.getReportFile().get().getAsFile();
+
+        try {
+
+            JsonFiles.writeAtomically(reportFile.toPath(), metrics, REPORT_TYPE);
+        }
+
+        catch (IOException e) {
+
+            this.log.warn("Could not write upload report {}.", reportFile, e);
+        }
+
+        this.log.lifecycle("Published {} of {} files, sending {} MB in {}ms. See {} for details.", published, metrics.size(), formatMegabytes(totalBytes), totalMillis, reportFile);
+    }
+
+    /**
+     * Formats a number of bytes as megabytes for logging.
+     *
+     * @param bytes The number of bytes.
+     * @return The number of megabytes with two decimal places.
+     */
+    private static String formatMegabytes(long bytes) {
+
+        return String.format(Locale.ROOT, "%.2f", bytes / 1_000_000d);
+    }
+
     /**
      * Parses a long value from an object. This currently supports numbers and strings.
      *
@@ -268,6 +930,21 @@ public abstract class TaskPublishCurseForge extends DefaultTask {
         throw new GradleException("Could not parse long from " + obj.getClass().getName() + " of value " + obj);
     }
 
+    /**
+     * Creates a provider that lazily resolves a value using {@link #parseString(Object)}. The value is resolved when the
+     * provider is first queried, or when the configuration cache is stored, so closures and files do not need to be
+     * serialized with the task. The resolved value is remembered, so a closure or file is only resolved once even when
+     * the provider is shared by several artifacts.
+     *
+     * @param providers The provider factory used to create the provider.
+     * @param obj       The value to resolve.
+     * @return A provider for the resolved value. The provider has no value if the resolved value is null.
+     */
+    public static Provider<String> parseStringLazily(ProviderFactory providers, @Nullable Object obj) {
+
+        return providers.provider(new MemoizedString(obj));
+    }
+
     /**
      * Gradle can be annoying and represent strings as non-string objects. This allows a variety of data types to be
      * accepted.
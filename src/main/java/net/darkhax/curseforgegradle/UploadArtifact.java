@@ -2,32 +2,25 @@ package net.darkhax.curseforgegradle;
 
 import net.darkhax.curseforgegradle.api.metadata.Metadata;
 import net.darkhax.curseforgegradle.api.metadata.ProjectRelations;
-import net.darkhax.curseforgegradle.api.upload.ResponseError;
-import net.darkhax.curseforgegradle.api.upload.ResponseSuccessful;
+import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
 
 import javax.annotation.Nullable;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,7 +30,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
-import java.util.UUID;
 
 /**
  * This class defines the script-time representation of an artifact being published to CurseForge. Users will directly
@@ -49,6 +41,18 @@ public class UploadArtifact {
 
     private final ObjectFactory objectFactory;
 
+    private final ProviderFactory providerFactory;
+
+    /**
+     * The shared upload service. This is used to access the digest cache when the checksum of the artifact is queried.
+     */
+    private final Provider<CurseForgeUploadService> uploadService;
+
+    /**
+     * The file the digest cache is stored in.
+     */
+    private final Provider<RegularFile> digestCacheFile;
+
     /**
      * An internal logger used to log information about the upload process. This logger includes the name of the project
      * and the task that is publishing the artifact.
@@ -87,7 +91,6 @@ public class UploadArtifact {
      * and will remain null until the file has been uploaded.
      */
     @Nullable
-    @Internal
     private Long curseFileId;
 
     /**
@@ -108,8 +111,8 @@ public class UploadArtifact {
      * An internal map of the relationships defined for this file and other files. These relationships are used by users
      * and launchers to identify things like required dependencies or incompatible mods.
      * <p>
-     * When a sub file is created using {@link #withAdditionalFile(Object)} it will inherit the current changelog value.
-     * This can be changed independently after creation.
+     * When a sub file is created using {@link #withAdditionalFile(Object)} it will receive a copy of the current
+     * relationships. Relationships added to either file after creation are not shared with the other.
      */
     private Map<String, String> relationships = new HashMap<>();
 
@@ -119,31 +122,43 @@ public class UploadArtifact {
      */
     private final ProjectRelations uploadRelations = new ProjectRelations();
 
+    /**
+     * Listeners that receive progress events while this artifact is uploaded.
+     */
+    private final List<Action<? super UploadProgress>> progressListeners = new ArrayList<>();
+
+    /**
+     * Determines if the file is recompressed with the highest deflate level before it is uploaded.
+     */
+    private boolean recompress = false;
+
     // --- TASK PROPERTIES --- //
 
     /**
      * An optional changelog for this file. This is displayed on the CurseForge website, and it's use is highly
      * recommended. For best results this should be defined using a UTF-8 string.
      * <p>
-     * When a sub file is created using {@link #withAdditionalFile(Object)} it will inherit the current changelog value.
-     * This can still be changed independently after creation.
+     * When a sub file is created using {@link #withAdditionalFile(Object)} it will inherit the changelog of this file.
+     * The value is linked rather than copied, so the sub file follows changes made to this changelog after it was
+     * created, until a changelog is set on the sub file itself.
      */
-    public Object changelog = null;
+    private final Property<String> changelog;
 
     /**
      * The type of changelog being defined. CurseForge supports various formats such as markdown and HTML however the
      * default format is plaintext.
      * <p>
-     * When a sub file is created using {@link #withAdditionalFile(Object)} it will inherit the current changelog type.
-     * This can still be changed independently after creation.
+     * When a sub file is created using {@link #withAdditionalFile(Object)} it will inherit the changelog type of this
+     * file. The value is linked rather than copied, so the sub file follows changes made to this changelog type after
+     * it was created, until a changelog type is set on the sub file itself.
      */
-    public Object changelogType = Constants.CHANGELOG_TEXT;
+    private final Property<String> changelogType;
 
     /**
      * The display name for the file on CurseForge. When defined this will hide the name of the file on CurseForge. The
      * use of this property is generally discouraged.
      */
-    public Object displayName = null;
+    private final Property<String> displayName;
 
     /**
      * A set of game versions associated with the artifact. At least one game version is required to upload an artifact.
@@ -159,10 +174,11 @@ public class UploadArtifact {
      * The type of release for this file. The default release type is an alpha. When using something like CI to automate
      * bleeding edge releases it is recommended to retain the alpha release type.
      * <p>
-     * When a sub file is created using {@link #withAdditionalFile(Object)} it will inherit the current release type.
-     * This can still be changed independently after creation.
+     * When a sub file is created using {@link #withAdditionalFile(Object)} it will inherit the release type of this
+     * file. The value is linked rather than copied, so the sub file follows changes made to this release type after it
+     * was created, until a release type is set on the sub file itself.
      */
-    public Object releaseType = Constants.RELEASE_TYPE_ALPHA;
+    private final Property<String> releaseType;
 
     /**
      * These are created using a helper method from TaskPublishCurseForge. Users should never construct this manually.
@@ -170,14 +186,20 @@ public class UploadArtifact {
      * @param artifact      The artifact to publish. This is not necessarily a file and may not be valid until later in
      *                      the build process.
      * @param projectId     The ID of the project to publish this artifact to.
-     * @param objectFactory The project-local object factory.
+     * @param objectFactory   The project-local object factory.
+     * @param providerFactory The project-local provider factory.
+     * @param uploadService   The shared upload service.
+     * @param digestCacheFile The file the digest cache is stored in.
      * @param log           A logger used to help with debugging. This is taken from the Task that define the artifact
      *                      and is unique to each task.
      * @param parent        An optional parent artifact. When defined the current artifact is treated as a
      *                      child/additional/sub file.
      */
-    protected UploadArtifact(Object artifact, Long projectId, ObjectFactory objectFactory, Logger log, @Nullable UploadArtifact parent) {
+    protected UploadArtifact(Object artifact, Long projectId, ObjectFactory objectFactory, ProviderFactory providerFactory, Provider<CurseForgeUploadService> uploadService, Provider<RegularFile> digestCacheFile, Logger log, @Nullable UploadArtifact parent) {
         this.objectFactory = objectFactory;
+        this.providerFactory = providerFactory;
+        this.uploadService = uploadService;
+        this.digestCacheFile = digestCacheFile;
         this.log = log;
         this.projectId = projectId;
         this.parent = parent;
@@ -185,6 +207,11 @@ public class UploadArtifact {
         ConfigurableFileCollection artifactContainer = objectFactory.fileCollection().from(artifact);
         artifactContainer.disallowChanges();
         this.artifact = artifactContainer;
+
+        this.changelog = objectFactory.property(String.class);
+        this.changelogType = objectFactory.property(String.class).convention(Constants.CHANGELOG_TEXT);
+        this.displayName = objectFactory.property(String.class);
+        this.releaseType = objectFactory.property(String.class).convention(Constants.RELEASE_TYPE_ALPHA);
     }
 
     @InputFiles
@@ -192,14 +219,131 @@ public class UploadArtifact {
         return artifact;
     }
 
+    /**
+     * Gets the SHA-256 checksum of the artifact. The checksum is computed lazily when the provider is queried, and is
+     * cached between builds for as long as the file is unchanged.
+     *
+     * @return A provider for the SHA-256 checksum as a hexadecimal string.
+     */
+    @Internal
+    public Provider<String> getChecksum() {
+        return this.providerFactory.provider(() -> this.uploadService.get().getDigestCache(this.digestCacheFile.get().getAsFile(), this.log).getDigest(this.artifact.getSingleFile()));
+    }
+
+    /**
+     * Gets the changelog for this file.
+     *
+     * @return The changelog property.
+     */
+    @Input
+    @Optional
+    public Property<String> getChangelog() {
+        return this.changelog;
+    }
+
+    /**
+     * Sets the changelog for this file. This accepts the same values as {@link TaskPublishCurseForge#parseString(Object)}.
+     *
+     * @param changelog The changelog value.
+     */
+    public void setChangelog(@Nullable Object changelog) {
+        this.changelog.set(TaskPublishCurseForge.parseStringLazily(this.providerFactory, changelog));
+    }
+
+    /**
+     * Gets the type of changelog being defined.
+     *
+     * @return The changelog type property.
+     */
+    @Input
+    @Optional
+    public Property<String> getChangelogType() {
+        return this.changelogType;
+    }
+
+    /**
+     * Sets the type of changelog being defined. This accepts the same values as
+     * {@link TaskPublishCurseForge#parseString(Object)}.
+     *
+     * @param changelogType The changelog type value.
+     */
+    public void setChangelogType(@Nullable Object changelogType) {
+        this.changelogType.set(TaskPublishCurseForge.parseStringLazily(this.providerFactory, changelogType));
+    }
+
+    /**
+     * Gets the display name for the file on CurseForge.
+     *
+     * @return The display name property.
+     */
+    @Input
+    @Optional
+    public Property<String> getDisplayName() {
+        return this.displayName;
+    }
+
+    /**
+     * Sets the display name for the file on CurseForge. This accepts the same values as
+     * {@link TaskPublishCurseForge#parseString(Object)}.
+     *
+     * @param displayName The display name value.
+     */
+    public void setDisplayName(@Nullable Object displayName) {
+        this.displayName.set(TaskPublishCurseForge.parseStringLazily(this.providerFactory, displayName));
+    }
+
+    /**
+     * Gets the type of release for this file.
+     *
+     * @return The release type property.
+     */
+    @Input
+    @Optional
+    public Property<String> getReleaseType() {
+        return this.releaseType;
+    }
+
+    /**
+     * Sets the type of release for this file. This accepts the same values as
+     * {@link TaskPublishCurseForge#parseString(Object)}.
+     *
+     * @param releaseType The release type value.
+     */
+    public void setReleaseType(@Nullable Object releaseType) {
+        this.releaseType.set(TaskPublishCurseForge.parseStringLazily(this.providerFactory, releaseType));
+    }
+
+    /**
+     * Checks if the file will be recompressed before it is uploaded.
+     *
+     * @return True if the file will be recompressed.
+     */
+    @Input
+    public boolean isRecompress() {
+        return this.recompress;
+    }
+
+    /**
+     * Sets if the file should be recompressed with the highest deflate level before it is uploaded. This only applies
+     * to ZIP based archives such as jars, and the recompressed file is only used if it is smaller than the original.
+     * The contents and names of the entries in the archive are not changed. This can reduce the upload time of loosely
+     * compressed archives at the cost of some CPU time.
+     *
+     * @param recompress True if the file should be recompressed.
+     */
+    public void setRecompress(boolean recompress) {
+        this.recompress = recompress;
+    }
+
     /**
      * Creates a new additional file that will be uploaded along with this main file. These files are sometimes called
      * child files or sub files. Only parent files can have additional files. Attempting to create an additional file on
      * another additional file is unsupported.
      * <p>
-     * By default additional files will copy the changelog, changelog type, release type, and project relations from the
-     * parent. Properties copied to an additional file can be modified after the fact however some properties like game
-     * versions are exclusively defined by the parent file.
+     * By default additional files will inherit the changelog, changelog type, and release type of the parent, and copy
+     * its current project relations. The inherited properties are linked to the parent, so they follow changes made to
+     * the parent after the additional file was created until they are set on the additional file itself. Some properties
+     * like game versions are exclusively defined by the parent file.
      *
      * @param file The file to publish.
      * @return An object that represents the artifact being published. This can be used to perform additional
@@ -213,16 +357,66 @@ public class UploadArtifact {
             throw new GradleException("Child artifacts must not have their own children. Artifacts can only be nested one layer deep.");
         }
 
-        final UploadArtifact subFile = new UploadArtifact(file, this.projectId, this.objectFactory, this.log, this);
-        subFile.changelogType = this.changelogType;
-        subFile.changelog = this.changelog;
-        subFile.releaseType = this.releaseType;
+        final UploadArtifact subFile = new UploadArtifact(file, this.projectId, this.objectFactory, this.providerFactory, this.uploadService, this.digestCacheFile, this.log, this);
+        subFile.changelogType.set(this.changelogType);
+        subFile.changelog.set(this.changelog);
+        subFile.releaseType.set(this.releaseType);
         subFile.relationships = new HashMap<>(this.relationships);
+        subFile.recompress = this.recompress;
 
         this.additionalFiles.add(subFile);
         return subFile;
     }
 
+    /**
+     * Adds a listener that receives progress events while this file is uploaded. Events are throttled by the
+     * progressIntervalBytes and progressIntervalMillis properties of the task, and a final event is sent once the whole
+     * file has been sent. Listeners are called on the thread that sends the file and should return quickly.
+     *
+     * @param listener The listener to add.
+     */
+    public void onProgress(Action<? super UploadProgress> listener) {
+
+        this.progressListeners.add(listener);
+    }
+
+    /**
+     * Gets the listeners that receive progress events while this file is uploaded.
+     *
+     * @return An immutable list of progress listeners.
+     */
+    @Internal
+    public List<Action<? super UploadProgress>> getProgressListeners() {
+        return Collections.unmodifiableList(this.progressListeners);
+    }
+
+    /**
+     * Creates a new top-level artifact for a single file that copies the configuration of this artifact. This is used
+     * to expand an {@link UploadBatch} into one artifact per file. The display name is not copied, so every file keeps
+     * its own name on CurseForge. This is intended for internal use.
+     *
+     * @param file The file to publish.
+     * @return A new artifact with the same configuration as this one.
+     */
+    final UploadArtifact copyFor(File file) {
+
+        if (!this.additionalFiles.isEmpty()) {
+
+            this.log.error("Batch uploads for project {} define additional files. Additional files are not supported for batch uploads!", this.projectId);
+            throw new GradleException("Batch uploads can not have additional files.");
+        }
+
+        final UploadArtifact copy = new UploadArtifact(file, this.projectId, this.objectFactory, this.providerFactory, this.uploadService, this.digestCacheFile, this.log, null);
+        copy.changelogType.set(this.changelogType);
+        copy.changelog.set(this.changelog);
+        copy.releaseType.set(this.releaseType);
+        copy.relationships = new HashMap<>(this.relationships);
+        copy.gameVersions.addAll(this.gameVersions);
+        copy.progressListeners.addAll(this.progressListeners);
+        copy.recompress = this.recompress;
+        return copy;
+    }
+
     /**
      * Marks another project as being incompatible with this file. This will warn users not to use that project with
      * yours. It may also prevent that project from being installed with a launcher when this file is already
@@ -394,64 +588,245 @@ public class UploadArtifact {
     }
 
     /**
-     * Prepares the artifact for being uploaded. This will resolve some configured properties into a format consumable
-     * by the API. This is intended for internal use.
+     * Checks the configuration of this artifact without sending anything to the API. Every configured value is
+     * resolved, the file must exist, and the changelog type, release type, and relation types must be values accepted
+     * by CurseForge. Every problem that is found is returned, rather than only the first one. This is intended for
+     * internal use.
+     *
+     * @param versionDetector The version detector of the task. Minecraft environments are only required when automatic
+     *                        version detection is disabled.
+     * @param catalog         An optional catalog of the game versions known to CurseForge. When this is provided every
+     *                        game version must be in the catalog.
+     * @return A description of each problem with the configuration. The list is empty if the artifact is valid.
      */
-    public final void prepareForUpload(VersionDetector versionDetector) {
+    public final List<String> validate(VersionDetector versionDetector, @Nullable GameVersionCatalog catalog) {
 
-        this.uploadFile = this.artifact.getSingleFile();
+        return this.resolveForValidation(versionDetector).check(catalog);
+    }
 
-        // Make sure the file being uploaded actually exists.
-        if (!this.uploadFile.exists()) {
+    /**
+     * Resolves every configured value of this artifact and checks the values that do not need to touch the file
+     * system. The configured values can be closures and providers from the build script, which are not guaranteed to
+     * be thread safe, so this must be called from the task thread. The returned validation holds the resolved values,
+     * and its remaining checks can be run from any thread.
+     *
+     * @param versionDetector The version detector of the task. Minecraft environments are only required when automatic
+     *                        version detection is disabled.
+     * @return The resolved values and the problems found so far.
+     */
+    final Validation resolveForValidation(VersionDetector versionDetector) {
 
-            this.log.error("Could not find the file to upload. Expected {}", uploadFile.getAbsolutePath());
-            throw new GradleException("The expected upload artifact does not exist!", new FileNotFoundException(uploadFile.getAbsolutePath()));
+        final List<String> problems = new ArrayList<>();
+        String label = String.valueOf(this.artifact);
+        File file = null;
+
+        try {
+
+            final Set<File> files = this.artifact.getFiles();
+
+            if (files.size() != 1) {
+
+                problems.add(label + ": Expected exactly one file to upload but found " + files.size() + ".");
+            }
+
+            else {
+
+                file = files.iterator().next();
+                label = file.getName();
+            }
         }
 
-        this.log.debug("Preparing to upload file {}.", this.uploadFile.getName());
+        catch (RuntimeException e) {
+
+            problems.add(label + ": Could not resolve the file to upload. " + e.getMessage());
+        }
+
+        resolve(this.changelog, "changelog", label, problems);
+        resolve(this.displayName, "display name", label, problems);
 
-        String parsedChangelogType = TaskPublishCurseForge.parseString(this.changelogType);
-        String parsedReleaseType = TaskPublishCurseForge.parseString(this.releaseType);
+        final String parsedChangelogType = resolve(this.changelogType, "changelog type", label, problems);
+        final String parsedReleaseType = resolve(this.releaseType, "release type", label, problems);
 
-        // Make sure a valid changelog type is being used.
         if (!Constants.VALID_CHANGELOG_TYPES.contains(parsedChangelogType)) {
 
-            this.log.warn("Changelog type {} is not recognized. This may cause issues!", parsedChangelogType);
+            problems.add(label + ": Changelog type " + parsedChangelogType + " is not one of " + Constants.VALID_CHANGELOG_TYPES + ".");
         }
 
-        // Make sure a valid release type is being used.
         if (!Constants.VALID_RELEASE_TYPES.contains(parsedReleaseType)) {
 
-            this.log.warn("Release type {} is not recognized. This may cause issues!", parsedReleaseType);
+            problems.add(label + ": Release type " + parsedReleaseType + " is not one of " + Constants.VALID_RELEASE_TYPES + ".");
         }
 
-        // Make sure all file relationships are valid. The project slugs are not tested because it's not realistic to do that with the current API limitations.
         for (Map.Entry<String, String> relation : this.relationships.entrySet()) {
 
-            final String projectSlug = relation.getKey();
-            final String relationType = relation.getValue();
+            if (!Constants.VALID_RELATION_TYPES.contains(relation.getValue())) {
 
-            this.log.debug("File {} will have a {} relationship to project {}.", this.uploadFile.getName(), relationType, projectSlug);
+                problems.add(label + ": The relation type " + relation.getValue() + " to project " + relation.getKey() + " is not one of " + Constants.VALID_RELATION_TYPES + ".");
+            }
+        }
 
-            if (!Constants.VALID_RELATION_TYPES.contains(relation.getValue())) {
+        // Only parent files define game versions. Additional files inherit them from their parent.
+        if (this.parent == null) {
 
-                this.log.warn("The relation type {} to project {} for file {} is not recognized.", relationType, projectSlug, uploadFile.getName());
+            if (this.gameVersions.isEmpty()) {
+
+                problems.add(label + ": At least one game version is required to upload a file to CurseForge.");
             }
 
-            this.uploadRelations.addRelationship(projectSlug, relationType);
+            else if (this.isMinecraftMod() && !versionDetector.isEnabled && !this.gameVersions.contains("Client") && !this.gameVersions.contains("Server")) {
+
+                problems.add(label + ": Minecraft mods must define an environment. This can be Client, Server, or both of them.");
+            }
         }
 
-        if (this.gameVersions.isEmpty()) {
-            throw new GradleException("At least one game version is required to upload a file to CurseForge. You have not defined any!");
+        return new Validation(label, file, problems, this.parent == null ? new HashSet<>(this.gameVersions) : null);
+    }
+
+    /**
+     * The resolved values of an artifact that is being validated. The checks that remain once the configured values
+     * have been resolved only read the file system and the game version catalog, so they can be run in parallel.
+     */
+    static final class Validation {
+
+        /**
+         * The name of the artifact, used in problem descriptions.
+         */
+        private final String label;
+
+        /**
+         * The file to upload, or null if it could not be resolved.
+         */
+        @Nullable
+        private final File file;
+
+        /**
+         * The problems found while the configured values were resolved.
+         */
+        private final List<String> problems;
+
+        /**
+         * The game versions to check against the catalog, or null for additional files.
+         */
+        @Nullable
+        private final Set<String> gameVersions;
+
+        /**
+         * Creates a new validation.
+         *
+         * @param label        The name of the artifact.
+         * @param file         The file to upload, or null if it could not be resolved.
+         * @param problems     The problems found while the configured values were resolved.
+         * @param gameVersions The game versions to check against the catalog, or null for additional files.
+         */
+        private Validation(String label, @Nullable File file, List<String> problems, @Nullable Set<String> gameVersions) {
+
+            this.label = label;
+            this.file = file;
+            this.problems = problems;
+            this.gameVersions = gameVersions;
         }
 
-        if (this.isMinecraftMod() && (!this.gameVersions.contains("Client") && !this.gameVersions.contains("Server"))) {
-            if (versionDetector.isEnabled) {
-                gameVersions.add("Client");
-                gameVersions.add("Server");
+        /**
+         * Runs the remaining checks. The file must exist, and every game version must be known to the catalog.
+         *
+         * @param catalog An optional catalog of the game versions known to CurseForge.
+         * @return A description of each problem with the artifact. The list is empty if the artifact is valid.
+         */
+        List<String> check(@Nullable GameVersionCatalog catalog) {
+
+            final List<String> found = new ArrayList<>();
+
+            if (this.file != null && !this.file.isFile()) {
+
+                found.add(this.label + ": The file to upload does not exist. Expected " + this.file.getAbsolutePath());
             }
-            else {
-                throw new GradleException("Minecraft mods must define an environment. This can be Client, Server, or both of them.");
+
+            found.addAll(this.problems);
+
+            if (catalog != null && this.gameVersions != null) {
+
+                for (String gameVersion : this.gameVersions) {
+
+                    if (!catalog.contains(gameVersion)) {
+
+                        found.add(this.label + ": Game version " + gameVersion + " is not known to CurseForge.");
+                    }
+                }
+            }
+
+            return found;
+        }
+    }
+
+    /**
+     * Resolves a property, recording a problem if the value can not be resolved.
+     *
+     * @param property The property to resolve.
+     * @param name     The name of the property, used in the problem description.
+     * @param label    The name of the artifact, used in the problem description.
+     * @param problems The list to add problems to.
+     * @return The resolved value, or null if it is not set or could not be resolved.
+     */
+    @Nullable
+    private static String resolve(Property<String> property, String name, String label, List<String> problems) {
+
+        try {
+
+            return property.getOrNull();
+        }
+
+        catch (RuntimeException e) {
+
+            problems.add(label + ": Could not resolve the " + name + ". " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Prepares the artifact for being uploaded. This will resolve some configured properties into a format consumable
+     * by the API. The artifact should be checked with {@link #validate(VersionDetector, GameVersionCatalog)} first. This is intended for
+     * internal use.
+     */
+    public final void prepareForUpload(VersionDetector versionDetector) {
+
+        this.uploadFile = this.artifact.getSingleFile();
+
+        // Make sure the file being uploaded actually exists.
+        if (!this.uploadFile.exists()) {
+
+            this.log.error("Could not find the file to upload. Expected {}", uploadFile.getAbsolutePath());
+            throw new GradleException("The expected upload artifact does not exist!", new FileNotFoundException(uploadFile.getAbsolutePath()));
+        }
+
+        this.log.debug("Preparing to upload file {}.", this.uploadFile.getName());
+
+        // The changelog, release, and relation types have been checked by validate. The project slugs are not tested
+        // because it's not realistic to do that with the current API limitations.
+        for (Map.Entry<String, String> relation : this.relationships.entrySet()) {
+
+            final String projectSlug = relation.getKey();
+            final String relationType = relation.getValue();
+
+            this.log.debug("File {} will have a {} relationship to project {}.", this.uploadFile.getName(), relationType, projectSlug);
+            this.uploadRelations.addRelationship(projectSlug, relationType);
+        }
+
+        // Only parent files define game versions. Additional files are uploaded without them and inherit the game
+        // versions of their parent.
+        if (this.parent == null) {
+
+            if (this.gameVersions.isEmpty()) {
+                throw new GradleException("At least one game version is required to upload a file to CurseForge. You have not defined any!");
+            }
+
+            if (this.isMinecraftMod() && (!this.gameVersions.contains("Client") && !this.gameVersions.contains("Server"))) {
+                if (versionDetector.isEnabled) {
+                    gameVersions.add("Client");
+                    gameVersions.add("Server");
+                }
+                else {
+                    throw new GradleException("Minecraft mods must define an environment. This can be Client, Server, or both of them.");
+                }
             }
         }
 
@@ -460,8 +835,30 @@ public class UploadArtifact {
     }
 
     private boolean isMinecraftMod() {
-        final Set<String> mcLoaders = Set.of("Fabric", "Forge", "NeoForge", "Quilt");
-        return this.gameVersions != null && !Collections.disjoint(mcLoaders, this.gameVersions);
+        return this.gameVersions != null && DetectorIndex.get().requiresEnvironment(this.gameVersions);
+    }
+
+    /**
+     * Gets the file that will be uploaded. This is only available once the artifact has been prepared.
+     *
+     * @return The file to upload, or null if the artifact has not been prepared.
+     */
+    @Nullable
+    @Internal
+    final File getUploadFile() {
+
+        return this.uploadFile;
+    }
+
+    /**
+     * Replaces the file that will be uploaded, such as with a recompressed copy of the artifact. This must be called
+     * after the artifact has been prepared.
+     *
+     * @param uploadFile The file to upload instead.
+     */
+    final void replaceUploadFile(File uploadFile) {
+
+        this.uploadFile = uploadFile;
     }
 
     /**
@@ -474,6 +871,16 @@ public class UploadArtifact {
         return endpoint + "/api/projects/" + this.projectId + "/upload-file";
     }
 
+    /**
+     * Builds the URI used to start resumable upload sessions for this project.
+     *
+     * @param endpoint The endpoint to upload the file to.
+     */
+    private String getSessionTarget(String endpoint) {
+
+        return endpoint + "/api/projects/" + this.projectId + "/upload-sessions";
+    }
+
     /**
      * Logs the URI this artifact would be uploaded to as well as the metadata for this artifact.
      *
@@ -492,71 +899,21 @@ public class UploadArtifact {
         this.log.lifecycle("Game versions: {}", prettyVersions);
     }
 
-    public final void beginUpload(String endpoint, String token) {
-        final HttpClient client = HttpClient.newHttpClient();
-        final String boundary = "----JavaBoundary" + UUID.randomUUID();
+    /**
+     * Creates a fully resolved upload request for this artifact. The artifact must have been prepared using
+     * {@link #prepareForUpload(VersionDetector)} first. This is intended for internal use.
+     *
+     * @param endpoint The endpoint to upload the file to.
+     * @return The upload request for this artifact.
+     */
+    public final UploadRequest createUploadRequest(String endpoint) {
+
         if (this.uploadFile == null) {
+
             throw new GradleException("Can not upload a null file!");
         }
-        try {
-            this.log.debug("Initiating upload of {}.", this.uploadFile.getName());
-            final byte[] fileBytes = Files.readAllBytes(this.uploadFile.toPath());
-            final String metadataJson = Constants.GSON.toJson(this.createMetadata());
-            final ByteArrayOutputStream bodyStream = new ByteArrayOutputStream();
-            final PrintWriter writer = new PrintWriter(new OutputStreamWriter(bodyStream, StandardCharsets.UTF_8), true);
-
-            // Metadata
-            writer.append("--").append(boundary).append("\r\n");
-            writer.append("Content-Disposition: form-data; name=\"metadata\"\r\n");
-            writer.append("Content-Type: application/json\r\n\r\n");
-            writer.append(metadataJson).append("\r\n");
-
-            // File part
-            writer.append("--").append(boundary).append("\r\n");
-            writer.append("Content-Disposition: form-data; name=\"file\"; filename=\"").append(this.uploadFile.getName()).append("\"\r\n");
-            writer.append("Content-Type: application/octet-stream\r\n\r\n");
-            writer.flush();
-            bodyStream.write(fileBytes);
-            bodyStream.write("\r\n".getBytes());
-
-            // End boundary
-            writer.append("--").append(boundary).append("--").append("\r\n");
-            writer.close();
-
-            final HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(getUploadTarget(endpoint)))
-                    .header("X-Api-Token", token)
-                    .header("User-Agent", "CurseForgeGradle (DarkhaxDev)")
-                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(bodyStream.toByteArray()))
-                    .build();
-            final HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
-            final int statusCode = response.statusCode();
-            if (statusCode == 200) {
-                try (InputStreamReader reader = new InputStreamReader(response.body())) {
-                    this.curseFileId = Constants.GSON.fromJson(reader, ResponseSuccessful.class).getId();
-                }
-                this.log.debug("Artifact {} uploaded with ID {}.", this.uploadFile.getName(), this.curseFileId);
-            }
-            else {
-                int errorCode = statusCode;
-                String message = "";
-                String contentType = response.headers().firstValue("content-type").orElse("");
-                if (contentType.contains("json")) {
-                    try (InputStreamReader reader = new InputStreamReader(response.body())) {
-                        ResponseError error = Constants.GSON.fromJson(reader, ResponseError.class);
-                        errorCode = error.getCode();
-                        message = error.getMessage();
-                    }
-                }
-                this.log.error("Curse rejected artifact {} with error code '{}' and message '{}'.", this.uploadFile.getName(), errorCode, message);
-                throw new GradleException("Failed to upload artifact " + this.uploadFile.getName() + ". Error code '" + errorCode + "', message '" + message + "'.");
-            }
-        }
-        catch (IOException | InterruptedException e) {
-            this.log.error("Failed to upload artifact {}!", this.uploadFile.getName());
-            throw new GradleException("Failed to upload artifact!", e);
-        }
+
+        return new UploadRequest(this.projectId, this.uploadFile, getUploadTarget(endpoint), getSessionTarget(endpoint), this.createMetadata());
     }
 
     /**
@@ -577,10 +934,10 @@ public class UploadArtifact {
     private Metadata createMetadata() {
 
         final Metadata request = new Metadata();
-        request.changelog = TaskPublishCurseForge.parseString(this.changelog);
-        request.changelogType = TaskPublishCurseForge.parseString(this.changelogType);
-        request.displayName = TaskPublishCurseForge.parseString(this.displayName);
-        request.releaseType = TaskPublishCurseForge.parseString(this.releaseType);
+        request.changelog = this.changelog.getOrNull();
+        request.changelogType = this.changelogType.getOrNull();
+        request.displayName = this.displayName.getOrNull();
+        request.releaseType = this.releaseType.getOrNull();
 
         // Only set the relations if they actually exist. Curse doesn't like empty arrays here :upside_down:
         if (!this.uploadRelations.getRelations().isEmpty()) {
@@ -612,7 +969,17 @@ public class UploadArtifact {
     }
 
     @Nullable
+    @Internal
     public Long getCurseFileId() {
         return curseFileId;
     }
+
+    /**
+     * Sets the ID of the file on CurseForge once it has been uploaded. This is intended for internal use.
+     *
+     * @param curseFileId The ID CurseForge assigned to the file.
+     */
+    void setCurseFileId(@Nullable Long curseFileId) {
+        this.curseFileId = curseFileId;
+    }
 }
\ No newline at end of file
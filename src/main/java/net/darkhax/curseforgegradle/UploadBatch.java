@@ -0,0 +1,146 @@
+package net.darkhax.curseforgegradle;
+
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A group of files that are published to the same project with the same configuration. Batches are created using
+ * {@link TaskPublishCurseForge#uploadAll(Object, Object, org.gradle.api.Action)} and are expanded into one
+ * {@link UploadArtifact} per file when the task is executed. This allows the files to be produced by other tasks, and
+ * to be unknown until then.
+ */
+public class UploadBatch {
+
+    /**
+     * The artifact that holds the shared configuration of the batch. The files of the batch are held as the artifact
+     * of the template, so Gradle tracks them as inputs of the task.
+     */
+    private final UploadArtifact template;
+
+    /**
+     * An optional pattern used to derive game versions from the name of each file. Every capture group that matches
+     * is added to the game versions of the file.
+     */
+    @Nullable
+    private final Pattern versionPattern;
+
+    /**
+     * These are created using a helper method from TaskPublishCurseForge. Users should never construct this manually.
+     *
+     * @param template       The artifact that holds the shared configuration and files of the batch.
+     * @param versionPattern An optional pattern used to derive game versions from file names.
+     */
+    UploadBatch(UploadArtifact template, @Nullable String versionPattern) {
+
+        this.template = template;
+        this.versionPattern = versionPattern != null ? Pattern.compile(versionPattern) : null;
+    }
+
+    @Nested
+    public UploadArtifact getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * Gets the pattern used to derive game versions from the name of each file.
+     *
+     * @return The version pattern, or null if versions are not derived from file names.
+     */
+    @Input
+    @Optional
+    @Nullable
+    public String getVersionPattern() {
+        return this.versionPattern != null ? this.versionPattern.pattern() : null;
+    }
+
+    /**
+     * Creates one artifact for each file in the batch. Directories are expanded to the files they directly contain,
+     * sorted by name. Files whose name does not match the version pattern are left out and reported as problems, so
+     * they are included in the validation report of the task. This is intended for internal use.
+     *
+     * @param problems The list to add problems to.
+     * @return The artifacts to publish.
+     */
+    public List<UploadArtifact> createArtifacts(List<String> problems) {
+
+        final List<UploadArtifact> artifacts = new ArrayList<>();
+        final List<File> files = new ArrayList<>();
+
+        for (File file : this.template.getArtifact().getFiles()) {
+
+            if (file.isDirectory()) {
+
+                final File[] children = file.listFiles(File::isFile);
+
+                if (children != null) {
+
+                    Arrays.sort(children, Comparator.comparing(File::getName));
+                    files.addAll(Arrays.asList(children));
+                }
+            }
+
+            else {
+
+                files.add(file);
+            }
+        }
+
+        for (File file : files) {
+
+            final UploadArtifact artifact = this.createArtifact(file, problems);
+
+            if (artifact != null) {
+
+                artifacts.add(artifact);
+            }
+        }
+
+        return artifacts;
+    }
+
+    /**
+     * Creates the artifact for a single file in the batch.
+     *
+     * @param file     The file to publish.
+     * @param problems The list to add problems to.
+     * @return The artifact for the file, or null if its game versions could not be derived from its name.
+     */
+    @Nullable
+    private UploadArtifact createArtifact(File file, List<String> problems) {
+
+        if (this.versionPattern != null) {
+
+            final Matcher matcher = this.versionPattern.matcher(file.getName());
+
+            if (!matcher.find()) {
+
+                problems.add(file.getName() + ": Could not derive game versions. The file name does not match the pattern " + this.versionPattern.pattern() + ".");
+                return null;
+            }
+
+            final UploadArtifact artifact = this.template.copyFor(file);
+
+            for (int group = 1; group <= matcher.groupCount(); group++) {
+
+                if (matcher.group(group) != null) {
+
+                    artifact.addGameVersion(matcher.group(group));
+                }
+            }
+
+            return artifact;
+        }
+
+        return this.template.copyFor(file);
+    }
+}
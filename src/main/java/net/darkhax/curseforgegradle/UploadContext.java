@@ -0,0 +1,278 @@
+package net.darkhax.curseforgegradle;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the state shared by every upload made by a single {@link TaskPublishCurseForge}. The {@link HttpClient} is owned
+ * by the {@link CurseForgeUploadService}, which allows uploads to the same endpoint to reuse pooled connections, TLS
+ * sessions, and HTTP/2 streams instead of negotiating a new connection for every file.
+ */
+public final class UploadContext {
+
+    /**
+     * The HTTP client used to send every upload request.
+     */
+    private final HttpClient client;
+
+    /**
+     * The CurseForge API token used to authenticate uploads.
+     */
+    private final String token;
+
+    /**
+     * The maximum amount of time to wait for an upload request to complete. When null there is no limit.
+     */
+    @Nullable
+    private final Duration requestTimeout;
+
+    /**
+     * The policy used to retry uploads that fail with a transient error.
+     */
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * The ledger of files that have already been published, or null if published files should not be skipped.
+     */
+    @Nullable
+    private final PublishLedger ledger;
+
+    /**
+     * The cache of file digests, or null if digests should not be cached.
+     */
+    @Nullable
+    private final DigestCache digestCache;
+
+    /**
+     * An optional limiter for the bandwidth used by uploads.
+     */
+    @Nullable
+    private final BandwidthLimiter bandwidthLimiter;
+
+    /**
+     * The size of each chunk when files are uploaded in chunks, or 0 if files are always uploaded in a single request.
+     */
+    private final long chunkSize;
+
+    /**
+     * An optional window that limits the number of requests in flight across the whole build.
+     */
+    @Nullable
+    private final UploadWindow uploadWindow;
+
+    /**
+     * Runs chunked uploads, which send their requests one after another and block while doing so.
+     */
+    private final Executor chunkedUploadExecutor;
+
+    /**
+     * Whether the API has reported that it does not support resumable uploads. Once this is known every other file
+     * is uploaded in a single request without asking again.
+     */
+    private volatile boolean chunkedUploadsUnsupported;
+
+    /**
+     * The upload context should not be constructed manually. It is created by the upload worker when it begins
+     * uploading files.
+     *
+     * @param client           The HTTP client used to send requests.
+     * @param token            The CurseForge API token.
+     * @param requestTimeout   An optional timeout for each upload request.
+     * @param retryPolicy      The policy used to retry failed uploads.
+     * @param ledger           An optional ledger of files that have already been published.
+     * @param digestCache      An optional cache of file digests.
+     * @param bandwidthLimiter An optional limiter for the bandwidth used by uploads.
+     * @param chunkSize        The size of each chunk for chunked uploads, or 0 to disable them.
+     * @param uploadWindow     An optional window that limits the number of requests in flight across the build.
+     * @param chunkedUploadExecutor An optional executor for chunked uploads. When this is null chunked uploads run on
+     *                              the thread that starts them.
+     */
+    UploadContext(HttpClient client, String token, @Nullable Duration requestTimeout, RetryPolicy retryPolicy, @Nullable PublishLedger ledger, @Nullable DigestCache digestCache, @Nullable BandwidthLimiter bandwidthLimiter, long chunkSize, @Nullable UploadWindow uploadWindow, @Nullable Executor chunkedUploadExecutor) {
+
+        this.client = client;
+        this.token = token;
+        this.requestTimeout = requestTimeout;
+        this.retryPolicy = retryPolicy;
+        this.ledger = ledger;
+        this.digestCache = digestCache;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.chunkSize = chunkSize;
+        this.uploadWindow = uploadWindow;
+        this.chunkedUploadExecutor = chunkedUploadExecutor != null ? chunkedUploadExecutor : Runnable::run;
+    }
+
+    /**
+     * Creates a new HTTP client with the given connection settings.
+     *
+     * @param connectTimeout The maximum amount of time to wait for a connection to be established, or null for no
+     *                       limit.
+     * @param preferHttp2    Whether HTTP/2 should be negotiated when the server supports it.
+     * @return The new HTTP client.
+     */
+    static HttpClient createClient(@Nullable Duration connectTimeout, boolean preferHttp2) {
+
+        final HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(preferHttp2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+
+        if (connectTimeout != null) {
+
+            builder.connectTimeout(connectTimeout);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Converts a timeout in seconds to a duration. Values of 0 or less are treated as no timeout.
+     *
+     * @param seconds The timeout in seconds.
+     * @return The timeout duration, or null if there is no timeout.
+     */
+    @Nullable
+    static Duration toTimeout(long seconds) {
+
+        return seconds > 0 ? Duration.ofSeconds(seconds) : null;
+    }
+
+    /**
+     * Gets the shared HTTP client.
+     *
+     * @return The shared HTTP client.
+     */
+    public HttpClient getClient() {
+
+        return this.client;
+    }
+
+    /**
+     * Gets the CurseForge API token used to authenticate uploads.
+     *
+     * @return The API token.
+     */
+    public String getToken() {
+
+        return this.token;
+    }
+
+    /**
+     * Gets the timeout applied to each upload request.
+     *
+     * @return The request timeout, or null if there is no limit.
+     */
+    @Nullable
+    public Duration getRequestTimeout() {
+
+        return this.requestTimeout;
+    }
+
+    /**
+     * Gets the policy used to retry uploads that fail with a transient error.
+     *
+     * @return The retry policy.
+     */
+    public RetryPolicy getRetryPolicy() {
+
+        return this.retryPolicy;
+    }
+
+    /**
+     * Gets the ledger of files that have already been published.
+     *
+     * @return The publish ledger, or null if published files should not be skipped.
+     */
+    @Nullable
+    public PublishLedger getLedger() {
+
+        return this.ledger;
+    }
+
+    /**
+     * Gets the cache of file digests.
+     *
+     * @return The digest cache, or null if digests should not be cached.
+     */
+    @Nullable
+    public DigestCache getDigestCache() {
+
+        return this.digestCache;
+    }
+
+    /**
+     * Gets the limiter for the bandwidth used by uploads.
+     *
+     * @return The bandwidth limiter, or null if bandwidth is not limited.
+     */
+    @Nullable
+    public BandwidthLimiter getBandwidthLimiter() {
+
+        return this.bandwidthLimiter;
+    }
+
+    /**
+     * Gets the size of each chunk when files are uploaded in chunks.
+     *
+     * @return The chunk size, or 0 if files are always uploaded in a single request.
+     */
+    public long getChunkSize() {
+
+        return this.chunkSize;
+    }
+
+    /**
+     * Gets the executor that runs chunked uploads.
+     *
+     * @return The chunked upload executor.
+     */
+    Executor getChunkedUploadExecutor() {
+
+        return this.chunkedUploadExecutor;
+    }
+
+    /**
+     * Checks if a file should be uploaded in chunks. Only files larger than one chunk are uploaded in chunks, and only
+     * while the API has not reported that it does not support them.
+     *
+     * @param file The file to upload.
+     * @return True if the file should be uploaded in chunks.
+     */
+    boolean shouldUploadInChunks(File file) {
+
+        return this.chunkSize > 0 && !this.chunkedUploadsUnsupported && file.length() > this.chunkSize;
+    }
+
+    /**
+     * Requests a slot in the build wide upload window. A slot is held while a request is being sent, and is returned
+     * with {@link #releaseUploadSlot()} before waiting to retry, so a long retry delay does not keep other uploads in
+     * the build from being sent.
+     *
+     * @param urgent Whether the request should be placed ahead of every other waiting request.
+     * @return A future that completes once the slot has been granted.
+     */
+    CompletableFuture<Void> acquireUploadSlot(boolean urgent) {
+
+        return this.uploadWindow != null ? this.uploadWindow.acquire(urgent) : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns a slot to the build wide upload window.
+     */
+    void releaseUploadSlot() {
+
+        if (this.uploadWindow != null) {
+
+            this.uploadWindow.release();
+        }
+    }
+
+    /**
+     * Records that the API does not support resumable uploads.
+     */
+    void disableChunkedUploads() {
+
+        this.chunkedUploadsUnsupported = true;
+    }
+}
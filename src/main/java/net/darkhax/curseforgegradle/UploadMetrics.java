@@ -0,0 +1,451 @@
+package net.darkhax.curseforgegradle;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing and throughput measurements for a single upload. Metrics are collected by the {@link CurseForgeUploadService}
+ * while a request is executed and are written to the upload report of the task that submitted the request. Durations
+ * are split into the phases of an upload so that slow releases can be attributed to hashing the file, waiting for an
+ * upload slot, connecting, sending the body, or waiting for the server to respond.
+ */
+public final class UploadMetrics {
+
+    /**
+     * The possible outcomes of an upload.
+     */
+    public enum Outcome {
+
+        /**
+         * The file was uploaded to CurseForge.
+         */
+        UPLOADED,
+
+        /**
+         * The file had already been published and the upload was skipped.
+         */
+        SKIPPED,
+
+        /**
+         * The upload did not complete.
+         */
+        FAILED
+    }
+
+    /**
+     * The name of the uploaded file.
+     */
+    @Expose
+    @SerializedName("fileName")
+    private final String fileName;
+
+    /**
+     * The CurseForge project the file was uploaded to.
+     */
+    @Expose
+    @SerializedName("projectId")
+    private final long projectId;
+
+    /**
+     * The size of the file on disk.
+     */
+    @Expose
+    @SerializedName("fileSize")
+    private final long fileSize;
+
+    /**
+     * The outcome of the upload.
+     */
+    @Expose
+    @SerializedName("outcome")
+    private Outcome outcome = Outcome.FAILED;
+
+    /**
+     * The ID CurseForge assigned to the file, or null if the upload did not complete.
+     */
+    @Expose
+    @SerializedName("fileId")
+    @Nullable
+    private Long fileId;
+
+    /**
+     * The number of times the upload was attempted.
+     */
+    @Expose
+    @SerializedName("attempts")
+    private int attempts;
+
+    /**
+     * The number of request body bytes sent, including bytes sent by attempts that failed.
+     */
+    @Expose
+    @SerializedName("bytesSent")
+    private long bytesSent;
+
+    /**
+     * The time spent hashing the file before the upload, in milliseconds.
+     */
+    @Expose
+    @SerializedName("hashMillis")
+    private long hashMillis;
+
+    /**
+     * The size of the artifact before it was recompressed, or null if it was not recompressed.
+     */
+    @Expose
+    @SerializedName("originalSize")
+    @Nullable
+    private Long originalSize;
+
+    /**
+     * The time spent recompressing the artifact, in milliseconds, or null if it was not recompressed.
+     */
+    @Expose
+    @SerializedName("recompressMillis")
+    @Nullable
+    private Long recompressMillis;
+
+    /**
+     * The time spent waiting for a build wide upload slot, in milliseconds.
+     */
+    @Expose
+    @SerializedName("queuedMillis")
+    private long queuedMillis;
+
+    /**
+     * The time spent serializing the metadata and building the request, in milliseconds.
+     */
+    @Expose
+    @SerializedName("prepareMillis")
+    private long prepareMillis;
+
+    /**
+     * The time from the start of the final attempt until the client started sending the body, in milliseconds. This
+     * includes connection and TLS setup when a connection could not be reused.
+     */
+    @Expose
+    @SerializedName("connectMillis")
+    private long connectMillis;
+
+    /**
+     * The time spent sending the body of the final attempt, in milliseconds.
+     */
+    @Expose
+    @SerializedName("uploadMillis")
+    private long uploadMillis;
+
+    /**
+     * The time from the last byte of the body being sent until the response arrived, in milliseconds.
+     */
+    @Expose
+    @SerializedName("serverResponseMillis")
+    private long serverResponseMillis;
+
+    /**
+     * The time from the start of the final attempt until the response arrived, in milliseconds.
+     */
+    @Expose
+    @SerializedName("timeToFirstByteMillis")
+    private long timeToFirstByteMillis;
+
+    /**
+     * The total time spent on the upload, including hashing, queueing, and retries, in milliseconds.
+     */
+    @Expose
+    @SerializedName("totalMillis")
+    private long totalMillis;
+
+    /**
+     * The rate the body of the final attempt was sent at, in megabytes per second.
+     */
+    @Expose
+    @SerializedName("megabytesPerSecond")
+    private double megabytesPerSecond;
+
+    /**
+     * The time the metrics were created.
+     */
+    private final transient long startNanos = System.nanoTime();
+
+    /**
+     * The time the current attempt was started.
+     */
+    private transient long attemptStartNanos;
+
+    /**
+     * The time the client subscribed to the body of the current attempt.
+     */
+    private transient volatile long bodyStartNanos;
+
+    /**
+     * The time the last byte of the body of the current attempt was sent.
+     */
+    private transient volatile long bodyEndNanos;
+
+    /**
+     * The number of body bytes sent by the current attempt.
+     */
+    private transient volatile long attemptBytes;
+
+    /**
+     * Creates new metrics for an upload request.
+     *
+     * @param request The request being measured.
+     */
+    UploadMetrics(UploadRequest request) {
+
+        this.fileName = request.getFile().getName();
+        this.projectId = request.getProjectId();
+        this.fileSize = request.getFile().length();
+
+        if (request.getOriginalSize() >= 0) {
+
+            this.originalSize = request.getOriginalSize();
+            this.recompressMillis = toMillis(request.getRecompressNanos());
+        }
+    }
+
+    /**
+     * Creates an observer that measures the body of each attempt as it is sent.
+     *
+     * @return An observer for the request body.
+     */
+    ObservingBodyPublisher.Observer bodyObserver() {
+
+        return new ObservingBodyPublisher.Observer() {
+
+            @Override
+            public void onStart() {
+
+                bodyStartNanos = System.nanoTime();
+                bodyEndNanos = 0;
+                attemptBytes = 0;
+            }
+
+            @Override
+            public void onChunk(ByteBuffer chunk) {
+
+                attemptBytes += chunk.remaining();
+            }
+
+            @Override
+            public void onComplete() {
+
+                bodyEndNanos = System.nanoTime();
+            }
+        };
+    }
+
+    /**
+     * Checks if the whole body of the current attempt has been handed to the HTTP client. Once this has happened the
+     * server may have accepted the file, even if no response was received.
+     *
+     * @return True if the whole body of the current attempt was sent.
+     */
+    boolean isBodySent() {
+
+        return this.bodyEndNanos != 0;
+    }
+
+    /**
+     * Records time spent hashing the file.
+     *
+     * @param nanos The time spent in nanoseconds.
+     */
+    void recordHash(long nanos) {
+
+        this.hashMillis += toMillis(nanos);
+    }
+
+    /**
+     * Records time spent waiting for an upload slot.
+     *
+     * @param nanos The time spent in nanoseconds.
+     */
+    void recordQueued(long nanos) {
+
+        this.queuedMillis += toMillis(nanos);
+    }
+
+    /**
+     * Records time spent building the request.
+     *
+     * @param nanos The time spent in nanoseconds.
+     */
+    void recordPrepare(long nanos) {
+
+        this.prepareMillis += toMillis(nanos);
+    }
+
+    /**
+     * Marks the start of an attempt to send the request.
+     *
+     * @param attempt The number of the attempt, starting at 1.
+     */
+    void startAttempt(int attempt) {
+
+        this.attempts = attempt;
+        this.attemptStartNanos = System.nanoTime();
+        this.bodyStartNanos = 0;
+        this.bodyEndNanos = 0;
+        this.attemptBytes = 0;
+    }
+
+    /**
+     * Marks the end of the current attempt, either because a response arrived or because the attempt failed. The
+     * timings of the attempt replace those of any earlier attempt.
+     */
+    void endAttempt() {
+
+        final long endNanos = System.nanoTime();
+        final long bodyStart = this.bodyStartNanos != 0 ? this.bodyStartNanos : endNanos;
+        final long bodyEnd = this.bodyEndNanos != 0 ? this.bodyEndNanos : endNanos;
+
+        this.bytesSent += this.attemptBytes;
+        this.connectMillis = toMillis(bodyStart - this.attemptStartNanos);
+        this.uploadMillis = toMillis(bodyEnd - bodyStart);
+        this.serverResponseMillis = toMillis(endNanos - bodyEnd);
+        this.timeToFirstByteMillis = toMillis(endNanos - this.attemptStartNanos);
+        this.megabytesPerSecond = bodyEnd > bodyStart ? this.attemptBytes / 1_000_000d / ((bodyEnd - bodyStart) / 1_000_000_000d) : 0;
+    }
+
+    /**
+     * Marks the file as uploaded.
+     *
+     * @param fileId The ID CurseForge assigned to the file.
+     */
+    void markUploaded(long fileId) {
+
+        this.outcome = Outcome.UPLOADED;
+        this.fileId = fileId;
+    }
+
+    /**
+     * Marks the upload as skipped because the file was already published.
+     *
+     * @param fileId The ID of the existing file.
+     */
+    void markSkipped(long fileId) {
+
+        this.outcome = Outcome.SKIPPED;
+        this.fileId = fileId;
+    }
+
+    /**
+     * Records the total time spent on the upload. This is called once the upload has finished, whatever the outcome.
+     */
+    void finish() {
+
+        this.totalMillis = toMillis(System.nanoTime() - this.startNanos);
+    }
+
+    /**
+     * Gets the name of the uploaded file.
+     *
+     * @return The file name.
+     */
+    public String getFileName() {
+
+        return this.fileName;
+    }
+
+    /**
+     * Gets the outcome of the upload.
+     *
+     * @return The upload outcome.
+     */
+    public Outcome getOutcome() {
+
+        return this.outcome;
+    }
+
+    /**
+     * Gets the ID CurseForge assigned to the file.
+     *
+     * @return The file ID, or null if the upload did not complete.
+     */
+    @Nullable
+    public Long getFileId() {
+
+        return this.fileId;
+    }
+
+    /**
+     * Gets the number of times the upload was attempted.
+     *
+     * @return The number of attempts.
+     */
+    public int getAttempts() {
+
+        return this.attempts;
+    }
+
+    /**
+     * Gets the number of body bytes sent, including bytes sent by failed attempts.
+     *
+     * @return The number of bytes sent.
+     */
+    public long getBytesSent() {
+
+        return this.bytesSent;
+    }
+
+    /**
+     * Gets the time spent sending the body of the final attempt.
+     *
+     * @return The upload time in milliseconds.
+     */
+    public long getUploadMillis() {
+
+        return this.uploadMillis;
+    }
+
+    /**
+     * Gets the time the server took to respond after the body was sent.
+     *
+     * @return The server response time in milliseconds.
+     */
+    public long getServerResponseMillis() {
+
+        return this.serverResponseMillis;
+    }
+
+    /**
+     * Gets the time from the start of the final attempt until the response arrived.
+     *
+     * @return The time to first byte in milliseconds.
+     */
+    public long getTimeToFirstByteMillis() {
+
+        return this.timeToFirstByteMillis;
+    }
+
+    /**
+     * Gets the total time spent on the upload.
+     *
+     * @return The total time in milliseconds.
+     */
+    public long getTotalMillis() {
+
+        return this.totalMillis;
+    }
+
+    /**
+     * Gets the rate the body of the final attempt was sent at.
+     *
+     * @return The throughput in megabytes per second.
+     */
+    public double getMegabytesPerSecond() {
+
+        return this.megabytesPerSecond;
+    }
+
+    private static long toMillis(long nanos) {
+
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
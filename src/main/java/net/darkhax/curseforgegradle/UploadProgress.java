@@ -0,0 +1,132 @@
+package net.darkhax.curseforgegradle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how much of an upload has been sent. Progress events are given to the listeners registered with
+ * {@link TaskPublishCurseForge#onProgress(org.gradle.api.Action)} and
+ * {@link UploadArtifact#onProgress(org.gradle.api.Action)} while the request body is being sent.
+ */
+public final class UploadProgress {
+
+    /**
+     * The name of the file being uploaded.
+     */
+    private final String fileName;
+
+    /**
+     * The number of bytes of the request body that have been sent by the current attempt.
+     */
+    private final long bytesSent;
+
+    /**
+     * The total size of the request body, or -1 if it is not known.
+     */
+    private final long totalBytes;
+
+    /**
+     * The time since the current attempt started sending the body, in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * The number of the current attempt, starting at 1.
+     */
+    private final int attempt;
+
+    /**
+     * Whether the whole body has been sent.
+     */
+    private final boolean complete;
+
+    UploadProgress(String fileName, long bytesSent, long totalBytes, long elapsedNanos, int attempt, boolean complete) {
+
+        this.fileName = fileName;
+        this.bytesSent = bytesSent;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.attempt = attempt;
+        this.complete = complete;
+    }
+
+    /**
+     * Gets the name of the file being uploaded.
+     *
+     * @return The file name.
+     */
+    public String getFileName() {
+
+        return this.fileName;
+    }
+
+    /**
+     * Gets the number of bytes that have been sent by the current attempt. This starts again from 0 when an upload is
+     * retried.
+     *
+     * @return The number of bytes sent.
+     */
+    public long getBytesSent() {
+
+        return this.bytesSent;
+    }
+
+    /**
+     * Gets the total size of the request body, including the metadata and multipart framing.
+     *
+     * @return The total number of bytes, or -1 if it is not known.
+     */
+    public long getTotalBytes() {
+
+        return this.totalBytes;
+    }
+
+    /**
+     * Gets the fraction of the body that has been sent.
+     *
+     * @return A value from 0 to 1, or -1 if the total size is not known.
+     */
+    public double getFraction() {
+
+        return this.totalBytes > 0 ? (double) this.bytesSent / this.totalBytes : -1;
+    }
+
+    /**
+     * Gets the time since the current attempt started sending the body.
+     *
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+
+        return TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos);
+    }
+
+    /**
+     * Gets the average rate the body has been sent at by the current attempt.
+     *
+     * @return The throughput in megabytes per second.
+     */
+    public double getMegabytesPerSecond() {
+
+        return this.elapsedNanos > 0 ? this.bytesSent / 1_000_000d / (this.elapsedNanos / 1_000_000_000d) : 0;
+    }
+
+    /**
+     * Gets the number of the current attempt.
+     *
+     * @return The attempt number, starting at 1.
+     */
+    public int getAttempt() {
+
+        return this.attempt;
+    }
+
+    /**
+     * Checks if the whole body has been sent. The upload is not finished until CurseForge has responded.
+     *
+     * @return True if the whole body has been sent.
+     */
+    public boolean isComplete() {
+
+        return this.complete;
+    }
+}
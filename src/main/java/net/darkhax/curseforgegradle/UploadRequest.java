@@ -0,0 +1,663 @@
+package net.darkhax.curseforgegradle;
+
+import net.darkhax.curseforgegradle.api.metadata.Metadata;
+import net.darkhax.curseforgegradle.api.metadata.Relation;
+import net.darkhax.curseforgegradle.api.upload.ResponseError;
+import net.darkhax.curseforgegradle.api.upload.ResponseSuccessful;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A fully resolved upload request for a single file. Requests are created from an {@link UploadArtifact} once it has
+ * been prepared, and only hold plain data so that they can be handed to Gradle worker actions and executed away from
+ * the task that defined them.
+ */
+public final class UploadRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A unique ID for the request. This is used to match the result of the upload back to the artifact that created
+     * the request.
+     */
+    private final String id = UUID.randomUUID().toString();
+
+    /**
+     * The CurseForge project ID the file is uploaded to.
+     */
+    private final long projectId;
+
+    /**
+     * The file to upload.
+     */
+    private final File file;
+
+    /**
+     * The full URI the file will be posted to.
+     */
+    private final String uploadTarget;
+
+    /**
+     * The full URI used to start a resumable upload session for the file.
+     */
+    private final String sessionTarget;
+
+    /**
+     * The upload metadata. For additional files the parent file ID is filled in once the parent has been uploaded.
+     */
+    private final Metadata metadata;
+
+    /**
+     * The SHA-256 digest of the file, or null if it has not been computed yet.
+     */
+    @Nullable
+    private String sha256;
+
+    /**
+     * The size of the artifact before it was recompressed, or -1 if it was not recompressed.
+     */
+    private long originalSize = -1;
+
+    /**
+     * The time spent recompressing the artifact, in nanoseconds.
+     */
+    private long recompressNanos;
+
+    /**
+     * Requests for additional files that must be uploaded after this request has completed.
+     */
+    private final List<UploadRequest> children = new ArrayList<>();
+
+    /**
+     * Upload requests should not be constructed manually. They are created by {@link UploadArtifact} when the task is
+     * executed.
+     *
+     * @param projectId    The CurseForge project ID the file is uploaded to.
+     * @param file         The file to upload.
+     * @param uploadTarget  The full URI to post the file to.
+     * @param sessionTarget The full URI used to start a resumable upload session.
+     * @param metadata      The upload metadata.
+     */
+    UploadRequest(long projectId, File file, String uploadTarget, String sessionTarget, Metadata metadata) {
+
+        this.projectId = projectId;
+        this.file = file;
+        this.uploadTarget = uploadTarget;
+        this.sessionTarget = sessionTarget;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Gets the unique ID of this request.
+     *
+     * @return The request ID.
+     */
+    public String getId() {
+
+        return this.id;
+    }
+
+    /**
+     * Gets the CurseForge project ID the file is uploaded to.
+     *
+     * @return The project ID.
+     */
+    public long getProjectId() {
+
+        return this.projectId;
+    }
+
+    /**
+     * Records that the file was recompressed before it was uploaded.
+     *
+     * @param originalSize The size of the artifact before it was recompressed.
+     * @param nanos        The time spent recompressing the artifact, in nanoseconds.
+     */
+    void recordRecompression(long originalSize, long nanos) {
+
+        this.originalSize = originalSize;
+        this.recompressNanos = nanos;
+    }
+
+    /**
+     * Gets the size of the artifact before it was recompressed.
+     *
+     * @return The original size, or -1 if the file was not recompressed.
+     */
+    public long getOriginalSize() {
+
+        return this.originalSize;
+    }
+
+    /**
+     * Gets the time spent recompressing the artifact.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getRecompressNanos() {
+
+        return this.recompressNanos;
+    }
+
+    /**
+     * Gets the URI used to start a resumable upload session for the file.
+     *
+     * @return The session URI.
+     */
+    public String getSessionTarget() {
+
+        return this.sessionTarget;
+    }
+
+    /**
+     * Gets the file that will be uploaded.
+     *
+     * @return The file to upload.
+     */
+    public File getFile() {
+
+        return this.file;
+    }
+
+    /**
+     * Gets the upload metadata.
+     *
+     * @return The upload metadata.
+     */
+    public Metadata getMetadata() {
+
+        return this.metadata;
+    }
+
+    /**
+     * Gets the SHA-256 digest of the file.
+     *
+     * @return The SHA-256 digest as a hexadecimal string, or null if it has not been computed yet.
+     */
+    @Nullable
+    public String getSha256() {
+
+        return this.sha256;
+    }
+
+    /**
+     * Sets the SHA-256 digest of the file.
+     *
+     * @param sha256 The SHA-256 digest as a hexadecimal string.
+     */
+    void setSha256(String sha256) {
+
+        this.sha256 = sha256;
+    }
+
+    /**
+     * Adds an additional file that will be uploaded after this request.
+     *
+     * @param child The request for the additional file.
+     */
+    void addChild(UploadRequest child) {
+
+        this.children.add(child);
+    }
+
+    /**
+     * Checks if this request uploads an additional file. Additional files are started ahead of other waiting uploads,
+     * as their parent has already been published.
+     *
+     * @return True if the file is uploaded as the child of another file.
+     */
+    boolean isAdditionalFile() {
+
+        return this.metadata.parentFileID != null;
+    }
+
+    /**
+     * Gets an immutable list of the additional files to upload after this request.
+     *
+     * @return The additional file requests.
+     */
+    public List<UploadRequest> getChildren() {
+
+        return Collections.unmodifiableList(this.children);
+    }
+
+    /**
+     * Creates the key used to identify this request in a {@link PublishLedger}. The key is made from the project ID, a
+     * hash of the file contents, and a hash of the metadata. Collections in the metadata are sorted first so the key
+     * does not depend on their iteration order. For additional files the key includes the parent file ID, so they are
+     * only skipped when the parent file was also skipped.
+     *
+     * @param fileDigest The SHA-256 digest of the file as a hexadecimal string.
+     * @return The ledger key.
+     */
+    public String getLedgerKey(String fileDigest) {
+
+        final StringJoiner metadataString = new StringJoiner("\n");
+        metadataString.add(String.valueOf(this.metadata.changelog));
+        metadataString.add(String.valueOf(this.metadata.changelogType));
+        metadataString.add(String.valueOf(this.metadata.displayName));
+        metadataString.add(String.valueOf(this.metadata.releaseType));
+        metadataString.add(String.valueOf(this.metadata.parentFileID));
+        metadataString.add(this.metadata.gameVersions != null ? new TreeSet<>(this.metadata.gameVersions).toString() : "null");
+
+        final Set<String> relations = new TreeSet<>();
+
+        if (this.metadata.relations != null) {
+
+            for (Relation relation : this.metadata.relations.getRelations()) {
+
+                relations.add(relation.slug + "=" + relation.type);
+            }
+        }
+
+        metadataString.add(relations.toString());
+
+        return this.projectId + ":" + fileDigest + ":" + Digests.toHex(Digests.sha256().digest(metadataString.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Posts the file to CurseForge and processes the response. Transient failures are retried according to the retry
+     * policy of the context.
+     *
+     * @param context The context shared by uploads in the current execution.
+     * @param log     The logger to report progress and errors to.
+     * @return The ID CurseForge assigned to the uploaded file.
+     */
+    public long send(UploadContext context, Logger log) {
+
+        return this.send(context, log, new UploadMetrics(this));
+    }
+
+    /**
+     * Posts the file to CurseForge and processes the response, recording the timing and throughput of each attempt.
+     *
+     * @param context The context shared by uploads in the current execution.
+     * @param log     The logger to report progress and errors to.
+     * @param metrics The metrics to record the upload in.
+     * @return The ID CurseForge assigned to the uploaded file.
+     */
+    public long send(UploadContext context, Logger log, UploadMetrics metrics) {
+
+        return this.send(context, log, metrics, null);
+    }
+
+    /**
+     * Posts the file to CurseForge and processes the response, recording the timing and throughput of each attempt and
+     * reporting progress while the body is sent. The calling thread waits for the upload to finish, see
+     * {@link #sendAsync(UploadContext, Logger, UploadMetrics, ProgressTracker)}.
+     *
+     * @param context  The context shared by uploads in the current execution.
+     * @param log      The logger to report progress and errors to.
+     * @param metrics  The metrics to record the upload in.
+     * @param progress An optional tracker that reports progress to listeners.
+     * @return The ID CurseForge assigned to the uploaded file.
+     */
+    long send(UploadContext context, Logger log, UploadMetrics metrics, @Nullable ProgressTracker progress) {
+
+        final CompletableFuture<Long> upload = this.sendAsync(context, log, metrics, progress);
+
+        try {
+
+            return upload.get();
+        }
+
+        catch (InterruptedException e) {
+
+            upload.cancel(true);
+            Thread.currentThread().interrupt();
+            log.error("Failed to upload artifact {}!", this.file.getName());
+            throw new GradleException("Failed to upload artifact!", e);
+        }
+
+        catch (ExecutionException e) {
+
+            throw toGradleException(e.getCause());
+        }
+    }
+
+    /**
+     * Posts the file to CurseForge without blocking the calling thread. Transient failures are retried according to
+     * the retry policy of the context, and the delay between attempts is scheduled rather than slept, so no thread is
+     * held while an upload is in flight or waiting to be retried. Files that are uploaded in chunks are the exception,
+     * they are sent from the chunked upload executor of the context.
+     *
+     * @param context  The context shared by uploads in the current execution.
+     * @param log      The logger to report progress and errors to.
+     * @param metrics  The metrics to record the upload in.
+     * @param progress An optional tracker that reports progress to listeners.
+     * @return A future that completes with the ID CurseForge assigned to the uploaded file. The future completes
+     * exceptionally with a {@link GradleException} if the file could not be uploaded.
+     */
+    CompletableFuture<Long> sendAsync(UploadContext context, Logger log, UploadMetrics metrics, @Nullable ProgressTracker progress) {
+
+        // When the digest of the file is not known yet it is computed in the same pass that uploads the file, so it can
+        // be logged and cached without reading the file a second time.
+        final MessageDigest fileDigest = this.sha256 == null ? Digests.sha256() : null;
+
+        // Large files are sent in chunks when enabled, so a failure only resends the chunk that was in flight. If the
+        // API does not support this the file is sent in a single request instead.
+        if (context.shouldUploadInChunks(this.file)) {
+
+            // Chunked uploads block while they send their chunks, so they run on the bounded executor of the upload
+            // service once a build wide upload slot has been granted.
+            final CompletableFuture<Long> chunked = context.acquireUploadSlot(this.isAdditionalFile()).thenApplyAsync(ignored -> {
+
+                try {
+
+                    final ChunkedUpload upload = new ChunkedUpload(this, context, log, metrics, progress, fileDigest);
+                    final Long fileId = upload.send();
+                    return fileId != null ? this.complete(fileId, context, log, metrics, upload.getFileDigest()) : null;
+                }
+
+                catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                    log.error("Failed to upload artifact {}!", this.file.getName());
+                    throw new GradleException("Failed to upload artifact!", e);
+                }
+            }, context.getChunkedUploadExecutor());
+
+            return chunked.thenCompose(fileId -> fileId != null ? CompletableFuture.completedFuture(fileId) : this.sendMultipart(context, log, metrics, progress, fileDigest));
+        }
+
+        return this.sendMultipart(context, log, metrics, progress, fileDigest);
+    }
+
+    /**
+     * Posts the file to CurseForge in a single multipart request. The request is only built once, so the metadata and
+     * multipart framing are reused by every attempt and only the file itself is streamed again.
+     *
+     * @param context    The context shared by uploads in the current execution.
+     * @param log        The logger to report progress and errors to.
+     * @param metrics    The metrics to record the upload in.
+     * @param progress   An optional tracker that reports progress to listeners.
+     * @param fileDigest An optional digest to update with the contents of the file as it is sent.
+     * @return A future that completes with the ID CurseForge assigned to the uploaded file.
+     */
+    private CompletableFuture<Long> sendMultipart(UploadContext context, Logger log, UploadMetrics metrics, @Nullable ProgressTracker progress, @Nullable MessageDigest fileDigest) {
+
+        try {
+
+            final long prepareStart = System.nanoTime();
+            final HttpRequest request = this.buildRequest(context, log, fileDigest, metrics, progress);
+            metrics.recordPrepare(System.nanoTime() - prepareStart);
+
+            return this.attempt(request, 1, context, log, metrics, fileDigest);
+        }
+
+        catch (GradleException e) {
+
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Sends a single attempt of the upload request. If the attempt fails with a transient error another attempt is
+     * scheduled once the delay given by the retry policy has passed.
+     *
+     * @param request    The HTTP request to send.
+     * @param attempt    The number of the attempt, starting at 1.
+     * @param context    The context shared by uploads in the current execution.
+     * @param log        The logger to report progress and errors to.
+     * @param metrics    The metrics to record the upload in.
+     * @param fileDigest The digest that is updated with the contents of the file, or null if it was already known.
+     * @return A future that completes with the ID CurseForge assigned to the uploaded file.
+     */
+    private CompletableFuture<Long> attempt(HttpRequest request, int attempt, UploadContext context, Logger log, UploadMetrics metrics, @Nullable MessageDigest fileDigest) {
+
+        final RetryPolicy retryPolicy = context.getRetryPolicy();
+        final long queueStart = System.nanoTime();
+
+        // A build wide upload slot is only held while the request is being sent. It is returned before a retry is
+        // scheduled, so the delay before the next attempt does not keep other uploads in the build from being sent.
+        return context.acquireUploadSlot(this.isAdditionalFile()).thenCompose(ignored -> {
+
+            metrics.recordQueued(System.nanoTime() - queueStart);
+            log.debug("Initiating upload of {}. Attempt {} of {}.", this.file.getName(), attempt, retryPolicy.getMaxAttempts());
+            metrics.startAttempt(attempt);
+
+            final CompletableFuture<HttpResponse<String>> exchange;
+
+            try {
+
+                exchange = context.getClient().sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            }
+
+            catch (RuntimeException e) {
+
+                context.releaseUploadSlot();
+                throw e;
+            }
+
+            return exchange.whenComplete((response, error) -> context.releaseUploadSlot());
+        }).handle((response, error) -> {
+
+            metrics.endAttempt();
+
+            if (error != null) {
+
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+                // The upload is a POST that publishes a new file, so it is only sent again when the failure happened
+                // before the whole body was sent, such as when the connection could not be established. Once the body
+                // has been sent the server may have published the file, and sending it again would publish a duplicate.
+                if (cause instanceof IOException && metrics.isBodySent()) {
+
+                    log.error("The connection failed after artifact {} was sent. CurseForge may have published the file, so it was not sent again. Check the files of project {} before publishing again.", this.file.getName(), this.projectId);
+                    return CompletableFuture.<Long>failedFuture(new GradleException("Failed to upload artifact " + this.file.getName() + ". The connection failed with '" + cause.getMessage() + "' after the file was sent, so it may have been published."));
+                }
+
+                if (cause instanceof IOException && retryPolicy.canRetry(attempt)) {
+
+                    final long delay = retryPolicy.getDelayMillis(attempt, Optional.empty());
+                    log.warn("Upload of artifact {} failed with '{}' before the file was sent. Retrying in {}ms.", this.file.getName(), cause.getMessage(), delay);
+                    return this.retry(request, attempt, delay, context, log, metrics, fileDigest);
+                }
+
+                log.error("Failed to upload artifact {}!", this.file.getName());
+                return CompletableFuture.<Long>failedFuture(new GradleException("Failed to upload artifact!", cause));
+            }
+
+            final int statusCode = response.statusCode();
+
+            try {
+
+                if (statusCode == 200) {
+
+                    return CompletableFuture.completedFuture(this.complete(Constants.GSON.fromJson(response.body(), ResponseSuccessful.class).getId(), context, log, metrics, fileDigest));
+                }
+
+                int errorCode = statusCode;
+                String message = "";
+                final String contentType = response.headers().firstValue("content-type").orElse("");
+
+                if (contentType.contains("json")) {
+
+                    final ResponseError responseError = Constants.GSON.fromJson(response.body(), ResponseError.class);
+                    errorCode = responseError.getCode();
+                    message = responseError.getMessage();
+                }
+
+                if (retryPolicy.isRetryable(statusCode, errorCode) && retryPolicy.canRetry(attempt)) {
+
+                    final long delay = retryPolicy.getDelayMillis(attempt, response.headers().firstValue("retry-after"));
+                    log.warn("Curse rejected artifact {} with error code '{}' and message '{}'. Retrying in {}ms.", this.file.getName(), errorCode, message, delay);
+                    return this.retry(request, attempt, delay, context, log, metrics, fileDigest);
+                }
+
+                log.error("Curse rejected artifact {} with error code '{}' and message '{}'.", this.file.getName(), errorCode, message);
+                return CompletableFuture.<Long>failedFuture(new GradleException("Failed to upload artifact " + this.file.getName() + ". Error code '" + errorCode + "', message '" + message + "'."));
+            }
+
+            catch (RuntimeException e) {
+
+                log.error("Failed to upload artifact {}!", this.file.getName());
+                return CompletableFuture.<Long>failedFuture(e instanceof GradleException ? e : new GradleException("Failed to upload artifact!", e));
+            }
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Schedules another attempt of the upload request once a delay has passed. No thread is held while waiting.
+     *
+     * @param request    The HTTP request to send.
+     * @param attempt    The number of the attempt that failed.
+     * @param delay      The delay before the next attempt, in milliseconds.
+     * @param context    The context shared by uploads in the current execution.
+     * @param log        The logger to report progress and errors to.
+     * @param metrics    The metrics to record the upload in.
+     * @param fileDigest The digest that is updated with the contents of the file, or null if it was already known.
+     * @return A future that completes with the ID CurseForge assigned to the uploaded file.
+     */
+    private CompletableFuture<Long> retry(HttpRequest request, int attempt, long delay, UploadContext context, Logger log, UploadMetrics metrics, @Nullable MessageDigest fileDigest) {
+
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)).thenCompose(ignored -> this.attempt(request, attempt + 1, context, log, metrics, fileDigest));
+    }
+
+    /**
+     * Converts the cause of a failed upload into the exception reported to Gradle.
+     *
+     * @param cause The cause of the failure.
+     * @return The exception to throw.
+     */
+    static GradleException toGradleException(Throwable cause) {
+
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+
+            cause = cause.getCause();
+        }
+
+        return cause instanceof GradleException ? (GradleException) cause : new GradleException("Failed to upload artifact!", cause);
+    }
+
+    /**
+     * Records a successful upload. If the digest of the whole file was computed while it was sent, it is stored and
+     * cached.
+     *
+     * @param fileId     The ID CurseForge assigned to the file.
+     * @param context    The context shared by uploads in the current execution.
+     * @param log        The logger to report the result to.
+     * @param metrics    The metrics to record the upload in.
+     * @param fileDigest The digest that was updated with the contents of the file, or null if it was already known or
+     *                   does not cover the whole file.
+     * @return The ID CurseForge assigned to the file.
+     */
+    private long complete(long fileId, UploadContext context, Logger log, UploadMetrics metrics, @Nullable MessageDigest fileDigest) {
+
+        if (fileDigest != null) {
+
+            this.sha256 = Digests.toHex(fileDigest.digest());
+
+            if (context.getDigestCache() != null) {
+
+                context.getDigestCache().put(this.file, this.sha256);
+            }
+        }
+
+        metrics.markUploaded(fileId);
+
+        if (this.sha256 != null) {
+
+            log.lifecycle("Artifact {} uploaded with ID {}. SHA-256: {}", this.file.getName(), fileId, this.sha256);
+        }
+
+        else {
+
+            log.lifecycle("Artifact {} uploaded with ID {}.", this.file.getName(), fileId);
+        }
+
+        return fileId;
+    }
+
+    /**
+     * Builds the HTTP request used to upload the file.
+     *
+     * @param context    The context shared by uploads in the current execution.
+     * @param log        The logger to report errors to.
+     * @param fileDigest An optional digest to update with the contents of the file as it is sent.
+     * @param metrics    The metrics that measure the body as it is sent.
+     * @param progress   An optional tracker that reports progress as the body is sent.
+     * @return The HTTP request.
+     */
+    private HttpRequest buildRequest(UploadContext context, Logger log, @Nullable MessageDigest fileDigest, UploadMetrics metrics, @Nullable ProgressTracker progress) {
+
+        try {
+
+            final MultipartBody body = new MultipartBody(this.metadata, this.file.toPath());
+
+            HttpRequest.BodyPublisher publisher = body.publisher(fileDigest == null ? null : new ObservingBodyPublisher.Observer() {
+
+                @Override
+                public void onStart() {
+
+                    fileDigest.reset();
+                }
+
+                @Override
+                public void onChunk(ByteBuffer chunk) {
+
+                    fileDigest.update(chunk);
+                }
+            });
+
+            // The limiter is applied before the body is observed, so metrics and progress see the throttled rate.
+            if (context.getBandwidthLimiter() != null) {
+
+                publisher = context.getBandwidthLimiter().throttle(publisher);
+            }
+
+            publisher = new ObservingBodyPublisher(publisher, metrics.bodyObserver());
+
+            if (progress != null) {
+
+                progress.setTotalBytes(publisher.contentLength());
+                publisher = new ObservingBodyPublisher(publisher, progress);
+            }
+
+            final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                    .uri(URI.create(this.uploadTarget))
+                    .header("X-Api-Token", context.getToken())
+                    .header("User-Agent", "CurseForgeGradle (DarkhaxDev)")
+                    .header("Content-Type", body.getContentType())
+                    .POST(publisher);
+
+            if (context.getRequestTimeout() != null) {
+
+                requestBuilder.timeout(context.getRequestTimeout());
+            }
+
+            return requestBuilder.build();
+        }
+
+        catch (FileNotFoundException e) {
+
+            log.error("Could not find the file to upload. Expected {}", this.file.getAbsolutePath());
+            throw new GradleException("The expected upload artifact does not exist!", e);
+        }
+    }
+}
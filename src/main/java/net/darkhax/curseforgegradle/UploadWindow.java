@@ -0,0 +1,97 @@
+package net.darkhax.curseforgegradle;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the number of uploads that can be in flight at once without blocking a thread for every upload that is
+ * waiting. Instead of waiting for a permit, callers receive a future that completes once a permit has been granted.
+ * Permits are granted in the order they were requested, except for urgent requests which are placed ahead of every
+ * other waiting request. Additional files are uploaded as urgent requests, so they do not wait behind every other
+ * top-level file once their parent has been published.
+ */
+final class UploadWindow {
+
+    /**
+     * The number of permits that are not currently held.
+     */
+    private int available;
+
+    /**
+     * Futures for requests that are waiting for a permit, in the order they will be granted one.
+     */
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+    /**
+     * Creates a new upload window.
+     *
+     * @param permits The maximum number of uploads that can be in flight at once. Values less than 1 are treated as 1.
+     */
+    UploadWindow(int permits) {
+
+        this.available = Math.max(1, permits);
+    }
+
+    /**
+     * Requests a permit. The permit must be returned using {@link #release()} once the upload has finished, whatever
+     * the outcome.
+     *
+     * @param urgent Whether the request should be placed ahead of every other waiting request.
+     * @return A future that completes once the permit has been granted.
+     */
+    CompletableFuture<Void> acquire(boolean urgent) {
+
+        final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+        synchronized (this) {
+
+            if (this.available > 0) {
+
+                this.available--;
+            }
+
+            else {
+
+                if (urgent) {
+
+                    this.waiting.addFirst(permit);
+                }
+
+                else {
+
+                    this.waiting.addLast(permit);
+                }
+
+                return permit;
+            }
+        }
+
+        permit.complete(null);
+        return permit;
+    }
+
+    /**
+     * Returns a permit to the window. If a request is waiting the permit is handed to it directly.
+     */
+    void release() {
+
+        CompletableFuture<Void> next;
+
+        // Waiters that were cancelled before they were granted a permit are skipped, so the permit is not lost.
+        do {
+
+            synchronized (this) {
+
+                next = this.waiting.pollFirst();
+
+                if (next == null) {
+
+                    this.available++;
+                    return;
+                }
+            }
+        }
+        while (!next.complete(null));
+    }
+}
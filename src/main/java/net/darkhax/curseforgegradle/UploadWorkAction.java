@@ -0,0 +1,228 @@
+package net.darkhax.curseforgegradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A unit of upload work that is executed by the Gradle worker API. Each action pipelines every top-level request of a
+ * task through the asynchronous HTTP client, and starts the additional files of each request as soon as the parent
+ * file has been published. The number of uploads in flight is bounded by a window rather than by the number of
+ * threads, so many files can be published from a single worker thread.
+ */
+public abstract class UploadWorkAction implements WorkAction<UploadWorkAction.Parameters> {
+
+    /**
+     * The parameters for an upload work action.
+     */
+    public interface Parameters extends WorkParameters {
+
+        /**
+         * The shared upload service.
+         *
+         * @return The upload service.
+         */
+        Property<CurseForgeUploadService> getUploadService();
+
+        /**
+         * The top-level requests to upload. Each request carries its own additional files.
+         *
+         * @return The requests to upload.
+         */
+        ListProperty<UploadRequest> getRequests();
+
+        /**
+         * The CurseForge API token used to authenticate uploads.
+         *
+         * @return The API token.
+         */
+        Property<String> getToken();
+
+        /**
+         * The connection timeout in seconds. Values of 0 or less disable the timeout.
+         *
+         * @return The connection timeout.
+         */
+        Property<Long> getConnectTimeoutSeconds();
+
+        /**
+         * The request timeout in seconds. Values of 0 or less disable the timeout.
+         *
+         * @return The request timeout.
+         */
+        Property<Long> getRequestTimeoutSeconds();
+
+        /**
+         * Whether HTTP/2 should be negotiated when the server supports it.
+         *
+         * @return Whether HTTP/2 is preferred.
+         */
+        Property<Boolean> getPreferHttp2();
+
+        /**
+         * The policy used to retry uploads that fail with a transient error.
+         *
+         * @return The retry policy.
+         */
+        Property<RetryPolicy> getRetryPolicy();
+
+        /**
+         * The publish ledger used to skip files that have already been published. When this is not set every file is
+         * uploaded.
+         *
+         * @return The publish ledger file.
+         */
+        RegularFileProperty getLedgerFile();
+
+        /**
+         * The cache of file digests. When this is not set digests are computed for every upload.
+         *
+         * @return The digest cache file.
+         */
+        RegularFileProperty getDigestCacheFile();
+
+        /**
+         * The size of each chunk when files are uploaded in chunks. Values of 0 or less upload every file in a single
+         * request.
+         *
+         * @return The chunk size in bytes.
+         */
+        Property<Long> getChunkSize();
+
+        /**
+         * The maximum number of uploads from this action that can be in flight at once.
+         *
+         * @return The maximum number of concurrent uploads.
+         */
+        Property<Integer> getMaxInFlight();
+
+        /**
+         * The name of the logger belonging to the task that submitted the work.
+         *
+         * @return The logger name.
+         */
+        Property<String> getLoggerName();
+    }
+
+    @Override
+    public void execute() {
+
+        final Parameters parameters = this.getParameters();
+        final Logger log = Logging.getLogger(parameters.getLoggerName().get());
+        final CurseForgeUploadService service = parameters.getUploadService().get();
+        final PublishLedger ledger = parameters.getLedgerFile().isPresent() ? service.getLedger(parameters.getLedgerFile().get().getAsFile(), log) : null;
+        final DigestCache digestCache = parameters.getDigestCacheFile().isPresent() ? service.getDigestCache(parameters.getDigestCacheFile().get().getAsFile(), log) : null;
+        final UploadContext context = new UploadContext(service.getClient(UploadContext.toTimeout(parameters.getConnectTimeoutSeconds().get()), parameters.getPreferHttp2().get()), parameters.getToken().get(), UploadContext.toTimeout(parameters.getRequestTimeoutSeconds().get()), parameters.getRetryPolicy().get(), ledger, digestCache, service.getBandwidthLimiter(), Math.max(0, parameters.getChunkSize().getOrElse(0L)), service.getUploadWindow(), service.getChunkedUploadExecutor());
+
+        final UploadWindow window = new UploadWindow(parameters.getMaxInFlight().getOrElse(1));
+        final List<CompletableFuture<Void>> uploads = new ArrayList<>();
+
+        // Top-level requests are independent of each other, so a failure only skips the additional files of the
+        // request that failed. The remaining requests are still uploaded and all failures are reported together.
+        for (UploadRequest request : parameters.getRequests().get()) {
+
+            uploads.add(service.uploadAsync(request, context, log, window, false).thenCompose(fileId -> {
+
+                // Handle additional files, sometimes called sub files or child files. The parent file ID is the only
+                // thing they depend on, so they are started together and ahead of top-level files that are waiting.
+                final List<CompletableFuture<Long>> children = new ArrayList<>();
+
+                for (UploadRequest child : request.getChildren()) {
+
+                    child.getMetadata().parentFileID = fileId;
+                    children.add(service.uploadAsync(child, context, log, window, true));
+                }
+
+                return allSettled(children);
+            }));
+        }
+
+        GradleException failure = null;
+
+        for (CompletableFuture<Void> upload : uploads) {
+
+            try {
+
+                upload.get();
+            }
+
+            catch (ExecutionException e) {
+
+                final GradleException exception = UploadRequest.toGradleException(e.getCause());
+
+                if (failure == null) {
+
+                    failure = exception;
+                }
+
+                else {
+
+                    failure.addSuppressed(exception);
+                }
+            }
+
+            catch (InterruptedException e) {
+
+                uploads.forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new GradleException("Interrupted while uploading artifacts!", e);
+            }
+        }
+
+        if (failure != null) {
+
+            throw failure;
+        }
+    }
+
+    /**
+     * Creates a future that completes once every upload has finished. Unlike
+     * {@link CompletableFuture#allOf(CompletableFuture[])} every failure is kept, the first is the cause and the rest
+     * are suppressed by it.
+     *
+     * @param uploads The uploads to wait for.
+     * @return A future that completes once every upload has finished.
+     */
+    private static CompletableFuture<Void> allSettled(List<CompletableFuture<Long>> uploads) {
+
+        return CompletableFuture.allOf(uploads.toArray(CompletableFuture<?>[]::new)).handle((ignored, error) -> {
+
+            if (error == null) {
+
+                return null;
+            }
+
+            GradleException failure = null;
+
+            for (CompletableFuture<Long> upload : uploads) {
+
+                if (upload.isCompletedExceptionally()) {
+
+                    final GradleException exception = UploadRequest.toGradleException(upload.handle((fileId, cause) -> cause).join());
+
+                    if (failure == null) {
+
+                        failure = exception;
+                    }
+
+                    else {
+
+                        failure.addSuppressed(exception);
+                    }
+                }
+            }
+
+            throw failure;
+        });
+    }
+}
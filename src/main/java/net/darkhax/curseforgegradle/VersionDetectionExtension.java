@@ -0,0 +1,223 @@
+package net.darkhax.curseforgegradle;
+
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.plugins.JavaBasePlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.provider.Provider;
+import org.gradle.jvm.toolchain.JavaLanguageVersion;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Detects game versions from the build environment of a project. One instance is created for each project, and every
+ * publish task in the project shares its detected versions. The plugins and properties to look for are provided by the
+ * {@link GameVersionDetector game version detectors} on the classpath. Detection only registers plugin callbacks and property
+ * providers while the project is configured. The versions are resolved the first time a task needs them, and the
+ * result is reused by every other task in the project.
+ * <p>
+ * Additional detectors can be registered from a build script using the {@code curseForgeVersionDetection} extension.
+ * Detectors are resolved lazily, so they do not add any work while the project is configured.
+ */
+public class VersionDetectionExtension {
+
+    /**
+     * The name of the extension.
+     */
+    public static final String NAME = "curseForgeVersionDetection";
+
+    /**
+     * The debug logger for the detector. When a new version is detected it will be logged to help debug things in the
+     * future.
+     */
+    private final Logger log;
+
+    /**
+     * A map of detected plugins and the versions they are associated with. Plugins are added as they are applied to
+     * the project.
+     */
+    private final Map<String, String> detectedPluginVersions = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * A map of property names and the providers used to read them lazily.
+     */
+    private final Map<String, Provider<String>> detectedProperties = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * Additional detectors registered by the user. These accept the same values as
+     * {@link TaskPublishCurseForge#parseString(Object)}.
+     */
+    private final List<Object> detectors = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * A provider for the detected versions. The versions are only resolved once, and the result is shared by every task
+     * in the project.
+     */
+    private final Provider<Set<String>> detectedVersions;
+
+    /**
+     * The extension should not be constructed manually. Use {@link #get(Project)} instead.
+     *
+     * @param project The project to detect versions for.
+     */
+    public VersionDetectionExtension(Project project) {
+
+        this.log = project.getLogger();
+        final DetectorIndex index = DetectorIndex.get();
+        this.log.debug("Detecting versions for {} using detectors for {}.", project.getDisplayName(), index.getGames());
+
+        //This operates as a lazy detection mechanism.
+        //withId either executes immediately if the plugin is already applied or when the plugin is applied.
+        index.getPluginVersions().forEach((pluginName, version) -> project.getPlugins().withId(pluginName, plugin -> this.detectedPluginVersions.put(pluginName, version)));
+
+        //This is a bit of a weird way to do it, but it is the only way to get the property value lazily.
+        //We can't just use project.findProperty because it will throw an exception if the property is not found.
+        //And we can not call it during task execution as we are not allowed to use or store the project.
+        //So the best alternative is to use a provider that will lazily evaluate the property.
+        //And if it is not currently registered, we use a gradle property provider instead.
+        index.getVersionProperties().forEach(propertyName -> {
+            final Provider<String> propertyProvider = project.hasProperty(propertyName) ?
+                    project.provider(() -> TaskPublishCurseForge.parseString(project.findProperty(propertyName))) :
+                    project.getProviders().gradleProperty(propertyName);
+
+            this.detectedProperties.put(propertyName, propertyProvider.orElse(""));
+        });
+
+        //The java toolchain is read lazily once the java plugin has been applied.
+        if (index.detectsJavaVersion()) {
+            project.getPlugins().withType(JavaBasePlugin.class, plugin -> {
+                final JavaPluginExtension extension = project.getExtensions().getByType(JavaPluginExtension.class);
+                this.detectedProperties.put("JavaVersion", extension.getToolchain().getLanguageVersion()
+                        .map(JavaLanguageVersion::asInt)
+                        .filter(version -> version > 0)
+                        .map(version -> "Java " + version).orElse(""));
+            });
+        }
+
+        this.detectedVersions = project.getProviders().provider(new Detection());
+    }
+
+    /**
+     * Gets the version detection for a project, creating it if it does not exist yet.
+     *
+     * @param project The project to get the version detection of.
+     * @return The version detection for the project.
+     */
+    public static VersionDetectionExtension get(Project project) {
+
+        final VersionDetectionExtension existing = project.getExtensions().findByType(VersionDetectionExtension.class);
+        return existing != null ? existing : project.getExtensions().create(NAME, VersionDetectionExtension.class, project);
+    }
+
+    /**
+     * Registers additional detectors. Each detector accepts the same values as
+     * {@link TaskPublishCurseForge#parseString(Object)}, such as a string, closure, or provider. Detectors are resolved
+     * when versions are first detected, and detectors that resolve to null or an empty string are ignored.
+     *
+     * @param detectors The detectors to register.
+     */
+    public void detect(Object... detectors) {
+
+        Collections.addAll(this.detectors, detectors);
+    }
+
+    /**
+     * Gets a provider for the versions detected for the project. The versions are only resolved once.
+     *
+     * @return A provider for an immutable set of detected versions.
+     */
+    public Provider<Set<String>> getDetectedVersions() {
+
+        return this.detectedVersions;
+    }
+
+    /**
+     * Resolves the detected versions the first time they are needed and remembers the result.
+     */
+    private final class Detection implements Callable<Set<String>> {
+
+        /**
+         * The detected versions, or null if they have not been resolved yet.
+         */
+        @Nullable
+        private volatile Set<String> versions;
+
+        @Override
+        public Set<String> call() {
+
+            Set<String> result = this.versions;
+
+            if (result == null) {
+
+                synchronized (this) {
+
+                    result = this.versions;
+
+                    if (result == null) {
+
+                        result = Collections.unmodifiableSet(detect());
+                        this.versions = result;
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Resolves every detector.
+         *
+         * @return The detected versions.
+         */
+        private Set<String> detect() {
+
+            final Set<String> versions = new LinkedHashSet<>();
+
+            // Detect ModLoader versions.
+            synchronized (detectedPluginVersions) {
+
+                detectedPluginVersions.forEach((pluginName, version) -> {
+                    versions.add(version);
+                    log.debug("Detected plugin '{}'. Automatically applying version '{}'.", pluginName, version);
+                });
+            }
+
+            // Detect properties (Which includes the java version)
+            synchronized (detectedProperties) {
+
+                detectedProperties.forEach((propertyName, provider) -> {
+                    final String propertyValue = provider.get();
+                    if (!propertyValue.isEmpty()) {
+                        versions.add(propertyValue);
+                        log.debug("Detected property '{}'. Automatically applying version '{}'.", propertyName, propertyValue);
+                    }
+                });
+            }
+
+            // Detectors registered by the user.
+            synchronized (detectors) {
+
+                for (Object detector : detectors) {
+
+                    final String version = TaskPublishCurseForge.parseString(detector);
+
+                    if (version != null && !version.isEmpty()) {
+
+                        versions.add(version);
+                        log.debug("Detected version '{}' from a registered detector.", version);
+                    }
+                }
+            }
+
+            return versions;
+        }
+    }
+}
@@ -1,42 +1,18 @@
 package net.darkhax.curseforgegradle;
 
-import org.apache.groovy.util.Maps;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
-import org.gradle.api.plugins.JavaPluginExtension;
-import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
-import org.gradle.jvm.toolchain.JavaLanguageVersion;
 
 import java.util.*;
 
 /**
- * This class is responsible for detecting versions from properties in the build environment. Each task will have one
- * instance of this class associated to it.
+ * This class applies versions detected from the build environment to a task. Each task will have one instance of this
+ * class associated to it. The detection itself is done by the {@link VersionDetectionExtension} of the project, which
+ * is shared by every task in the project, so the environment is only inspected once.
  */
 public final class VersionDetector {
 
-    /**
-     * A map of well known plugins and the versions they are associated with. This is used to automatically detect
-     * them.
-     */
-    private static final Map<String, String> WELL_KNOWN_PLUGINS = Maps.of(
-            "net.minecraftforge.gradle", "Forge",
-            "fabric-loom", "Fabric",
-            "org.quiltmc.loom", "Quilt",
-            "net.neoforged.gradle", "NeoForge",
-            "net.neoforged.gradle.userdev", "NeoForge",
-            "net.neoforged.moddev", "NeoForge"
-    );
-
-    private static final Set<String> WELL_KNOWN_PROPERTIES = Set.of(
-            "MC_VERSION",
-            "minecraft_version",
-            "mc_version",
-            "mcVersion",
-            "minecraftVersion"
-    );
-
     /**
      * The debug logger for the detector. When a new version is detected it will be logged to help debug things in the
      * future.
@@ -54,65 +30,22 @@ public final class VersionDetector {
     public boolean isEnabled = true;
 
     /**
-     * A set of detected plugin versions. This detection is run lazily and when the task that owns this detector
-     * initializes during task execution is it queried to register versions.
+     * A provider for the versions detected for the project. This is shared with every other task in the project and is
+     * only resolved once.
      */
-    private final Map<String, String> detectedPluginVersions = new HashMap<>();
-
-    /**
-     * A set of detected properties. This detection is run lazily and when the task that owns this detector initializes
-     * during task execution is it queried to register versions.
-     */
-    private final Map<String, Provider<String>> detectedProperties = new HashMap<>();
+    private final Provider<Set<String>> projectVersions;
 
     /**
      * The version detector should not be constructed manually. It is automatically constructed when the CurseForge
      * publish task is defined. Each task will have its own instance of the version detector.
      *
-     * @param project The project associated with this version detector. This is primarily used to check applied plugins
-     *                and build properties.
+     * @param project The project associated with this version detector. This is used to find the shared version
+     *                detection of the project.
      * @param log     The log output for debug information. This is taken from the task that owns this instance.
      */
     VersionDetector(Project project, Logger log) {
         this.log = log;
-
-        //This operates as a lazy detection mechanism.
-        //withId either executes immediately if the plugin is already applied or when the plugin is applied.
-        //We then read the detected versions during task execution.
-        WELL_KNOWN_PLUGINS.forEach((pluginName, version) -> {
-            project.getPlugins().withId(pluginName, plugin -> {
-                detectedPluginVersions.put(pluginName, version);
-            });
-        });
-
-        //This operates as a lazy detection mechanism.
-        //We then read the detected versions during task execution.
-        WELL_KNOWN_PROPERTIES.forEach(propertyName -> {
-            //This is a bit of a weird way to do it, but it is the only way to get the property value lazily.
-            //We can't just use project.findProperty because it will throw an exception if the property is not found.
-            //And we can not call it during task execution as we are not allowed to use or store the project.
-            //So the best alternative is to use a provider that will lazily evaluate the property.
-            //And if it is not currently registered on task creation, we use a gradle property provider instead.
-            Provider<String> propertyProvider = project.hasProperty(propertyName) ?
-                    project.provider(() -> TaskPublishCurseForge.parseString(project.findProperty(propertyName))) :
-                    project.getProviders().gradleProperty(propertyName);
-
-            propertyProvider = propertyProvider.orElse("");
-
-            detectedProperties.put(propertyName, propertyProvider);
-        });
-
-        //Now we detect the java version from the java toolchain.
-        JavaPluginExtension extension = project.getExtensions().findByType(JavaPluginExtension.class);
-
-        if (extension != null) {
-            //We use a lazy resolve here as the java toolchain is not always available.
-            Property<JavaLanguageVersion> languageVersion = extension.getToolchain().getLanguageVersion();
-            detectedProperties.put("JavaVersion", languageVersion
-                    .map(JavaLanguageVersion::asInt)
-                    .filter(version -> version > 0)
-                    .map(version -> "Java " + version).orElse(""));
-        }
+        this.projectVersions = VersionDetectionExtension.get(project).getDetectedVersions();
     }
 
     /**
@@ -122,22 +55,8 @@ public final class VersionDetector {
 
         if (isEnabled) {
 
-            // Minecraft
-
-            // Detect ModLoader versions.
-            detectedPluginVersions.forEach((pluginName, version) -> {
-                this.detectedVersions.add(version);
-                this.log.debug("Detected plugin '{}'. Automatically applying version '{}'.", pluginName, version);
-            });
-
-            // Detect properties (Which includes the java version)
-            detectedProperties.forEach((propertyName, provider) -> {
-                final String propertyValue = provider.get();
-                if (!propertyValue.isEmpty()) {
-                    this.detectedVersions.add(propertyValue);
-                    this.log.debug("Detected property '{}'. Automatically applying version '{}'.", propertyName, propertyValue);
-                }
-            });
+            this.detectedVersions.addAll(this.projectVersions.get());
+            this.log.debug("Automatically applying detected versions {}.", this.detectedVersions);
         }
     }
 
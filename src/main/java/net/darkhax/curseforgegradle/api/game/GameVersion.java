@@ -0,0 +1,79 @@
+package net.darkhax.curseforgegradle.api.game;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * This POJO represents a game version returned by the CurseForge API. CurseForge also uses game versions to represent
+ * mod loaders, environments, and Java versions.
+ */
+public final class GameVersion {
+
+    /**
+     * The ID of the game version.
+     */
+    @Expose
+    @SerializedName("id")
+    private long id;
+
+    /**
+     * The ID of the type of the game version, such as a Minecraft version or a mod loader.
+     */
+    @Expose
+    @SerializedName("gameVersionTypeID")
+    private long typeId;
+
+    /**
+     * The display name of the game version.
+     */
+    @Expose
+    @SerializedName("name")
+    private String name;
+
+    /**
+     * The slug of the game version.
+     */
+    @Expose
+    @SerializedName("slug")
+    private String slug;
+
+    /**
+     * Gets the ID of the game version.
+     *
+     * @return The game version ID.
+     */
+    public long getId() {
+
+        return this.id;
+    }
+
+    /**
+     * Gets the ID of the type of the game version.
+     *
+     * @return The game version type ID.
+     */
+    public long getTypeId() {
+
+        return this.typeId;
+    }
+
+    /**
+     * Gets the display name of the game version.
+     *
+     * @return The game version name.
+     */
+    public String getName() {
+
+        return this.name;
+    }
+
+    /**
+     * Gets the slug of the game version.
+     *
+     * @return The game version slug.
+     */
+    public String getSlug() {
+
+        return this.slug;
+    }
+}
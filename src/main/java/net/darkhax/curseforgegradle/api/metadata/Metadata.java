@@ -4,6 +4,7 @@ import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import net.darkhax.curseforgegradle.Constants;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -11,7 +12,9 @@ import java.util.Set;
  * A POJO that represents the metadata value in a CurseForge upload request. This object exists to be serialized to the
  * JSON used to make that request.
  */
-public final class Metadata {
+public final class Metadata implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * The changelog string. OPTIONAL
@@ -0,0 +1,195 @@
+package net.darkhax.curseforgegradle.api.metadata;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A hand-written Gson adapter for {@link Metadata}. Metadata is serialized once for every upload, so this adapter
+ * avoids the reflection used by Gson's default adapter. The JSON produced is the same as the reflective adapter, and
+ * null values are omitted.
+ */
+public final class MetadataAdapter extends TypeAdapter<Metadata> {
+
+    /**
+     * The adapter used to write the relations of the metadata.
+     */
+    private final ProjectRelationsAdapter relationsAdapter = new ProjectRelationsAdapter();
+
+    @Override
+    public void write(JsonWriter out, Metadata value) throws IOException {
+
+        if (value == null) {
+
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+
+        if (value.changelog != null) {
+
+            out.name("changelog").value(value.changelog);
+        }
+
+        if (value.changelogType != null) {
+
+            out.name("changelogType").value(value.changelogType);
+        }
+
+        if (value.displayName != null) {
+
+            out.name("displayName").value(value.displayName);
+        }
+
+        if (value.parentFileID != null) {
+
+            out.name("parentFileID").value(value.parentFileID);
+        }
+
+        if (value.gameVersions != null) {
+
+            out.name("gameVersionNames").beginArray();
+
+            for (String version : value.gameVersions) {
+
+                out.value(version);
+            }
+
+            out.endArray();
+        }
+
+        if (value.releaseType != null) {
+
+            out.name("releaseType").value(value.releaseType);
+        }
+
+        if (value.relations != null) {
+
+            out.name("relations");
+            this.relationsAdapter.write(out, value.relations);
+        }
+
+        out.endObject();
+    }
+
+    @Override
+    public Metadata read(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+
+            in.nextNull();
+            return null;
+        }
+
+        final Metadata metadata = new Metadata();
+        in.beginObject();
+
+        while (in.hasNext()) {
+
+            final String name = in.nextName();
+
+            if ("changelog".equals(name)) {
+
+                metadata.changelog = readString(in);
+            }
+
+            else if ("changelogType".equals(name)) {
+
+                metadata.changelogType = readString(in);
+            }
+
+            else if ("displayName".equals(name)) {
+
+                metadata.displayName = readString(in);
+            }
+
+            else if ("parentFileID".equals(name)) {
+
+                if (in.peek() == JsonToken.NULL) {
+
+                    in.nextNull();
+                    metadata.parentFileID = null;
+                }
+
+                else {
+
+                    metadata.parentFileID = in.nextLong();
+                }
+            }
+
+            else if ("gameVersionNames".equals(name)) {
+
+                metadata.gameVersions = readStrings(in);
+            }
+
+            else if ("releaseType".equals(name)) {
+
+                metadata.releaseType = readString(in);
+            }
+
+            else if ("relations".equals(name)) {
+
+                metadata.relations = this.relationsAdapter.read(in);
+            }
+
+            else {
+
+                in.skipValue();
+            }
+        }
+
+        in.endObject();
+        return metadata;
+    }
+
+    /**
+     * Reads an array of strings that may be null.
+     *
+     * @param in The reader to read from.
+     * @return The set of strings, or null.
+     * @throws IOException If the value could not be read.
+     */
+    private static Set<String> readStrings(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+
+            in.nextNull();
+            return null;
+        }
+
+        final Set<String> values = new HashSet<>();
+        in.beginArray();
+
+        while (in.hasNext()) {
+
+            values.add(readString(in));
+        }
+
+        in.endArray();
+        return values;
+    }
+
+    /**
+     * Reads a string value that may be null.
+     *
+     * @param in The reader to read from.
+     * @return The string value, or null.
+     * @throws IOException If the value could not be read.
+     */
+    static String readString(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+
+            in.nextNull();
+            return null;
+        }
+
+        return in.nextString();
+    }
+}
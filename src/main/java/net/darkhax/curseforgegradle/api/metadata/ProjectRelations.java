@@ -3,13 +3,16 @@ package net.darkhax.curseforgegradle.api.metadata;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * An object that serves as a container for relationships to other projects.
  */
-public final class ProjectRelations {
+public final class ProjectRelations implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Contains all relationships with other projects.
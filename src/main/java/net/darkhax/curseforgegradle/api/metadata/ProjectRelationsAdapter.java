@@ -0,0 +1,82 @@
+package net.darkhax.curseforgegradle.api.metadata;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A hand-written Gson adapter for {@link ProjectRelations}. This avoids reflection when relations are written for each
+ * upload. The JSON produced is the same as the reflective adapter.
+ */
+public final class ProjectRelationsAdapter extends TypeAdapter<ProjectRelations> {
+
+    /**
+     * The adapter used to write each relation.
+     */
+    private final RelationAdapter relationAdapter = new RelationAdapter();
+
+    @Override
+    public void write(JsonWriter out, ProjectRelations value) throws IOException {
+
+        if (value == null) {
+
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("projects").beginArray();
+
+        for (Relation relation : value.getRelations()) {
+
+            this.relationAdapter.write(out, relation);
+        }
+
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public ProjectRelations read(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+
+            in.nextNull();
+            return null;
+        }
+
+        final ProjectRelations relations = new ProjectRelations();
+        in.beginObject();
+
+        while (in.hasNext()) {
+
+            if ("projects".equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+
+                in.beginArray();
+
+                while (in.hasNext()) {
+
+                    final Relation relation = this.relationAdapter.read(in);
+
+                    if (relation != null) {
+
+                        relations.getRelations().add(relation);
+                    }
+                }
+
+                in.endArray();
+            }
+
+            else {
+
+                in.skipValue();
+            }
+        }
+
+        in.endObject();
+        return relations;
+    }
+}
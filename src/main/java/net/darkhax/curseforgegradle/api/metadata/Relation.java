@@ -3,10 +3,14 @@ package net.darkhax.curseforgegradle.api.metadata;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
+import java.io.Serializable;
+
 /**
  * Represents a project relationship in the CurseForge upload metadata.
  */
-public class Relation {
+public class Relation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * The slug of the project.
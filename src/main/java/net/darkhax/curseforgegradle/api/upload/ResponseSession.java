@@ -0,0 +1,67 @@
+package net.darkhax.curseforgegradle.api.upload;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import javax.annotation.Nullable;
+
+/**
+ * This POJO represents the state of a resumable upload session. It is returned when a session is started, after each
+ * chunk is received, and when the state of a session is queried.
+ */
+public final class ResponseSession {
+
+    /**
+     * The ID of the session. This is only returned when the session is started.
+     */
+    @Expose
+    @SerializedName("sessionId")
+    private String sessionId;
+
+    /**
+     * The number of bytes of the file the server has received and acknowledged. The server only acknowledges bytes
+     * that directly follow the bytes it already has, so the upload can always resume from this offset.
+     */
+    @Expose
+    @SerializedName("received")
+    private long received;
+
+    /**
+     * The ID of the uploaded file. This is only returned once the whole file has been received.
+     */
+    @Expose
+    @SerializedName("id")
+    @Nullable
+    private Long id;
+
+    /**
+     * Gets the ID of the session.
+     *
+     * @return The session ID.
+     */
+    public String getSessionId() {
+
+        return this.sessionId;
+    }
+
+    /**
+     * Gets the number of bytes the server has acknowledged.
+     *
+     * @return The acknowledged byte count.
+     */
+    public long getReceived() {
+
+        return this.received;
+    }
+
+    /**
+     * Gets the ID of the uploaded file.
+     *
+     * @return The file ID, or null if the file has not been completely received.
+     */
+    @Nullable
+    public Long getId() {
+
+        return this.id;
+    }
+}
@@ -0,0 +1,196 @@
+package net.darkhax.curseforgegradle;
+
+import net.darkhax.curseforgegradle.api.metadata.Metadata;
+import net.darkhax.curseforgegradle.testing.MockCurseForgeServer;
+import net.darkhax.curseforgegradle.testing.RecordedUpload;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs chunked uploads against a local stand-in for the CurseForge API.
+ */
+class ChunkedUploadTest {
+
+    /**
+     * The ID of the project every file is uploaded to.
+     */
+    private static final long PROJECT_ID = 5;
+
+    /**
+     * The size of each chunk. Every file in these tests is split into several chunks.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The logger passed to every upload.
+     */
+    private static final Logger LOG = Logging.getLogger("CurseForgeGradle/test");
+
+    /**
+     * A directory for the files to upload.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The local stand-in for the CurseForge API.
+     */
+    private MockCurseForgeServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        this.server = MockCurseForgeServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        this.server.close();
+    }
+
+    /**
+     * When a chunk fails after the server has kept part of it, the upload asks the server how many bytes it received
+     * and resumes from there.
+     */
+    @Test
+    void resumesAfterDroppedChunk() throws IOException {
+
+        this.server.withResumableUploads().failNext(503, null);
+
+        final File file = this.createFile("mod.jar", CHUNK_SIZE * 4 + 123);
+        final UploadRequest request = this.createRequest(file);
+        final long fileId = request.send(this.createContext(), LOG);
+
+        final List<RecordedUpload> uploads = this.server.getAcceptedUploads();
+        assertEquals(1, uploads.size());
+
+        final RecordedUpload upload = uploads.get(0);
+        assertEquals(fileId, upload.getFileId());
+        assertEquals("mod.jar", upload.getFileName());
+        assertEquals(file.length(), upload.getFileSize());
+        assertTrue(upload.getMetadataJson().contains("\"changelog\":\"Chunked.\""), upload.getMetadataJson());
+
+        // The server keeps the first half of the failed chunk, so only the second half is sent again, and the rest of
+        // the file is sent in four more chunks.
+        assertEquals(5, this.server.getChunkRequests());
+        assertEquals(file.length() + CHUNK_SIZE / 2, upload.getBytesReceived());
+        assertEquals(sha256(file), request.getSha256());
+    }
+
+    /**
+     * A server that reports more bytes received than have been sent has lost track of the upload, so the upload fails
+     * instead of skipping bytes the server never received.
+     */
+    @Test
+    void failsWhenServerReportsUnsentBytes() throws IOException {
+
+        this.server.withResumableUploads().overReportReceived(CHUNK_SIZE);
+
+        final File file = this.createFile("mod.jar", CHUNK_SIZE * 4);
+        final UploadRequest request = this.createRequest(file);
+        final GradleException error = assertThrows(GradleException.class, () -> request.send(this.createContext(), LOG));
+
+        assertTrue(error.getMessage().contains("only " + CHUNK_SIZE + " bytes have been sent"), error.getMessage());
+        assertEquals(1, this.server.getChunkRequests());
+        assertTrue(this.server.getAcceptedUploads().isEmpty());
+        assertNull(request.getSha256());
+    }
+
+    /**
+     * Servers that do not support upload sessions are sent the file in a single multipart request instead.
+     */
+    @Test
+    void fallsBackToMultipartWhenSessionsAreUnsupported() throws IOException {
+
+        for (int status : new int[] {404, 405, 501}) {
+
+            this.server.withoutResumableUploads(status);
+
+            final File file = this.createFile("mod-" + status + ".jar", CHUNK_SIZE * 3);
+            final UploadRequest request = this.createRequest(file);
+            final long fileId = request.send(this.createContext(), LOG);
+
+            final RecordedUpload upload = this.server.getAcceptedUploads().get(this.server.getAcceptedUploads().size() - 1);
+            assertEquals(fileId, upload.getFileId(), "Status " + status);
+            assertEquals(file.getName(), upload.getFileName(), "Status " + status);
+            assertEquals(file.length(), upload.getFileSize(), "Status " + status);
+            assertTrue(upload.getMetadataJson().contains("\"changelog\":\"Chunked.\""), upload.getMetadataJson());
+            assertEquals(sha256(file), request.getSha256(), "Status " + status);
+        }
+
+        assertEquals(3, this.server.getUploads().size());
+        assertEquals(0, this.server.getChunkRequests());
+    }
+
+    /**
+     * Creates a context that uploads files larger than {@link #CHUNK_SIZE} in chunks.
+     *
+     * @return The upload context.
+     */
+    private UploadContext createContext() {
+
+        final RetryPolicy retryPolicy = new RetryPolicy(3, 10, 0, true, RetryPolicy.DEFAULT_RETRYABLE_CODES);
+        return new UploadContext(UploadContext.createClient(Duration.ofSeconds(10), false), "test-token", Duration.ofSeconds(30), retryPolicy, null, null, null, CHUNK_SIZE, null, null);
+    }
+
+    /**
+     * Creates a request for a file.
+     *
+     * @param file The file to upload.
+     * @return The upload request.
+     */
+    private UploadRequest createRequest(File file) {
+
+        final Metadata metadata = new Metadata();
+        metadata.changelog = "Chunked.";
+        metadata.gameVersions = Set.of("1.21");
+
+        final String projectEndpoint = this.server.getEndpoint() + "/api/projects/" + PROJECT_ID;
+        return new UploadRequest(PROJECT_ID, file, projectEndpoint + "/upload-file", projectEndpoint + "/upload-sessions", metadata);
+    }
+
+    /**
+     * Creates a file with random contents.
+     *
+     * @param name The name of the file.
+     * @param size The size of the file in bytes.
+     * @return The created file.
+     */
+    private File createFile(String name, int size) throws IOException {
+
+        final byte[] contents = new byte[size];
+        new Random(name.hashCode()).nextBytes(contents);
+        return Files.write(this.tempDir.resolve(name), contents).toFile();
+    }
+
+    /**
+     * Computes the SHA-256 digest of a file.
+     *
+     * @param file The file to digest.
+     * @return The digest as a hexadecimal string.
+     */
+    private static String sha256(File file) throws IOException {
+
+        return Digests.toHex(Digests.sha256().digest(Files.readAllBytes(file.toPath())));
+    }
+}
@@ -0,0 +1,108 @@
+package net.darkhax.curseforgegradle;
+
+import net.darkhax.curseforgegradle.testing.MockCurseForgeServer;
+import net.darkhax.curseforgegradle.testing.RecordedUpload;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the publish task in a real build with the configuration cache enabled.
+ */
+class ConfigurationCacheTest {
+
+    /**
+     * A directory for the test build.
+     */
+    @TempDir
+    Path projectDir;
+
+    /**
+     * The local stand-in for the CurseForge API.
+     */
+    private MockCurseForgeServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        this.server = MockCurseForgeServer.start();
+
+        Files.writeString(this.projectDir.resolve("settings.gradle"), "rootProject.name = 'configuration-cache-test'\n");
+        Files.writeString(this.projectDir.resolve("changelog.md"), "Cached changelog.");
+        Files.write(this.projectDir.resolve("mod.jar"), new byte[1024]);
+        Files.writeString(this.projectDir.resolve("build.gradle"), String.join("\n",
+                "plugins {",
+                "    id 'net.darkhax.curseforgegradle'",
+                "}",
+                "",
+                "tasks.register('publishCurseForge', net.darkhax.curseforgegradle.TaskPublishCurseForge) {",
+                "    apiEndpoint = '" + this.server.getEndpoint() + "'",
+                "    apiToken = providers.gradleProperty('curseforgeToken')",
+                "    disableVersionDetection()",
+                "",
+                "    def mainFile = upload(5, file('mod.jar'))",
+                "    mainFile.addGameVersion('1.21')",
+                "    mainFile.releaseType = 'release'",
+                "    mainFile.changelog = file('changelog.md')",
+                "}",
+                ""), StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        this.server.close();
+    }
+
+    /**
+     * The configuration cache is stored by the first build and reused by the second, and both builds upload the file
+     * with the values that were configured.
+     */
+    @Test
+    void storesAndReusesConfigurationCache() {
+
+        final BuildResult first = this.runBuild();
+        assertTrue(first.getOutput().contains("Configuration cache entry stored."), first.getOutput());
+
+        final BuildResult second = this.runBuild();
+        assertTrue(second.getOutput().contains("Reusing configuration cache."), second.getOutput());
+
+        final List<RecordedUpload> uploads = this.server.getAcceptedUploads();
+        assertEquals(2, uploads.size());
+
+        for (RecordedUpload upload : uploads) {
+
+            assertEquals("test-token", upload.getToken());
+            assertEquals("mod.jar", upload.getFileName());
+            assertTrue(upload.getMetadataJson().contains("\"changelog\":\"Cached changelog.\""), upload.getMetadataJson());
+            assertTrue(upload.getMetadataJson().contains("\"releaseType\":\"release\""), upload.getMetadataJson());
+        }
+    }
+
+    /**
+     * Runs the publish task with the configuration cache enabled.
+     *
+     * @return The result of the build.
+     */
+    private BuildResult runBuild() {
+
+        return GradleRunner.create()
+                .withProjectDir(this.projectDir.toFile())
+                .withPluginClasspath()
+                .withArguments("publishCurseForge", "--configuration-cache", "-PcurseforgeToken=test-token", "--stacktrace")
+                .forwardOutput()
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package net.darkhax.curseforgegradle;
+
+import net.darkhax.curseforgegradle.testing.MockCurseForgeServer;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the publish task against a local stand-in for the CurseForge API.
+ */
+class TaskPublishCurseForgeTest {
+
+    /**
+     * A directory for the test project and the files to upload.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The local stand-in for the CurseForge API.
+     */
+    private MockCurseForgeServer server;
+
+    /**
+     * The publish task being tested.
+     */
+    private TaskPublishCurseForge task;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        this.server = MockCurseForgeServer.start().withGameVersions("1.20.1", "1.21");
+
+        final Project project = ProjectBuilder.builder().withProjectDir(this.tempDir.toFile()).build();
+        project.getPlugins().apply(CurseForgeGradlePlugin.class);
+
+        this.task = project.getTasks().register("publishCurseForge", TaskPublishCurseForge.class).get();
+        this.task.getApiEndpoint().set(this.server.getEndpoint());
+        this.task.getApiToken().set("test-token");
+        this.task.getGameVersionCacheFile().set(this.tempDir.resolve("game-versions.json").toFile());
+        this.task.disableVersionDetection();
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        this.server.close();
+    }
+
+    /**
+     * Every problem with the task and its artifacts is reported together, and nothing is uploaded when any problem
+     * is found.
+     */
+    @Test
+    void reportsEveryValidationProblem() throws IOException {
+
+        this.task.validateGameVersions = true;
+        this.task.retryDelayMillis = -1;
+
+        final UploadArtifact valid = this.task.upload(5, this.createFile("valid.jar"));
+        valid.addGameVersion("1.21");
+
+        final UploadArtifact missing = this.task.upload(5, this.tempDir.resolve("missing.jar").toFile());
+        missing.addGameVersion("1.21");
+
+        final UploadArtifact invalid = this.task.upload(5, this.createFile("invalid.jar"));
+        invalid.addGameVersion("1.22");
+        invalid.setReleaseType("nightly");
+        invalid.addRelation("jei", "needed");
+
+        final UploadArtifact unversioned = this.task.upload(5, this.createFile("unversioned.jar"));
+        unversioned.withAdditionalFile(this.tempDir.resolve("missing-sources.jar").toFile()).setChangelogType("bbcode");
+
+        final GradleException exception = assertThrows(GradleException.class, this.task::apply);
+        final String message = exception.getMessage();
+
+        assertTrue(message.contains("Found 8 problem(s)"), message);
+        assertTrue(message.contains("retryDelayMillis"), message);
+        assertTrue(message.contains("missing.jar: The file to upload does not exist."), message);
+        assertTrue(message.contains("invalid.jar: Release type nightly is not one of"), message);
+        assertTrue(message.contains("invalid.jar: The relation type needed to project jei is not one of"), message);
+        assertTrue(message.contains("invalid.jar: Game version 1.22 is not known to CurseForge."), message);
+        assertTrue(message.contains("unversioned.jar: At least one game version is required"), message);
+        assertTrue(message.contains("missing-sources.jar: The file to upload does not exist."), message);
+        assertTrue(message.contains("missing-sources.jar: Changelog type bbcode is not one of"), message);
+
+        assertEquals(1, this.server.getGameVersionRequests());
+        assertEquals(0, this.server.getUploads().size());
+    }
+
+    /**
+     * Creates a file to upload.
+     *
+     * @param name The name of the file.
+     * @return The created file.
+     */
+    private File createFile(String name) throws IOException {
+
+        return Files.write(this.tempDir.resolve(name), new byte[1024]).toFile();
+    }
+}
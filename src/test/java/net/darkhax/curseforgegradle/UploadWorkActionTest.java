@@ -0,0 +1,342 @@
+package net.darkhax.curseforgegradle;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.darkhax.curseforgegradle.api.metadata.Metadata;
+import net.darkhax.curseforgegradle.testing.MockCurseForgeServer;
+import net.darkhax.curseforgegradle.testing.RecordedUpload;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the upload work action against a local stand-in for the CurseForge API.
+ */
+class UploadWorkActionTest {
+
+    /**
+     * The ID of the project every file is uploaded to.
+     */
+    private static final long PROJECT_ID = 5;
+
+    /**
+     * The API token sent with every upload.
+     */
+    private static final String TOKEN = "test-token";
+
+    /**
+     * A directory for the test project and the files to upload.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The local stand-in for the CurseForge API.
+     */
+    private MockCurseForgeServer server;
+
+    /**
+     * The project used to create the upload service and the work parameters.
+     */
+    private Project project;
+
+    /**
+     * The shared upload service.
+     */
+    private CurseForgeUploadService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        this.server = MockCurseForgeServer.start();
+        this.project = ProjectBuilder.builder().withProjectDir(this.tempDir.resolve("project").toFile()).build();
+        this.service = CurseForgeUploadService.register(this.project).get();
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        this.service.close();
+        this.server.close();
+    }
+
+    /**
+     * A file is sent as a multipart request with its metadata, and the ID assigned by CurseForge is recorded.
+     */
+    @Test
+    void uploadsFileWithMetadata() throws IOException {
+
+        final UploadRequest request = this.createRequest("mod.jar", 64 * 1024);
+        request.getMetadata().changelog = "Fixed a crash.";
+        request.getMetadata().displayName = "Mod 1.0.0";
+
+        this.execute(null, request);
+
+        final List<RecordedUpload> uploads = this.server.getAcceptedUploads();
+        assertEquals(1, uploads.size());
+
+        final RecordedUpload upload = uploads.get(0);
+        assertEquals(PROJECT_ID, upload.getProjectId());
+        assertEquals(TOKEN, upload.getToken());
+        assertEquals("mod.jar", upload.getFileName());
+        assertEquals(64 * 1024, upload.getFileSize());
+
+        final JsonObject metadata = JsonParser.parseString(upload.getMetadataJson()).getAsJsonObject();
+        assertEquals("Fixed a crash.", metadata.get("changelog").getAsString());
+        assertEquals("text", metadata.get("changelogType").getAsString());
+        assertEquals("Mod 1.0.0", metadata.get("displayName").getAsString());
+        assertEquals("beta", metadata.get("releaseType").getAsString());
+        assertEquals("1.21", metadata.getAsJsonArray("gameVersionNames").get(0).getAsString());
+        assertFalse(metadata.has("parentFileID"));
+
+        assertEquals(upload.getFileId(), this.service.takeUploadedFile(request));
+        assertEquals(UploadMetrics.Outcome.UPLOADED, this.service.takeMetrics(request).getOutcome());
+    }
+
+    /**
+     * Additional files are uploaded once their parent has been published, and are linked to the ID of the parent.
+     */
+    @Test
+    void uploadsAdditionalFilesWithParentFileId() throws IOException {
+
+        final UploadRequest parent = this.createRequest("mod.jar", 4096);
+        final UploadRequest sources = this.createAdditionalRequest(parent, "mod-sources.jar", 2048);
+        final UploadRequest javadoc = this.createAdditionalRequest(parent, "mod-javadoc.jar", 1024);
+        final UploadRequest other = this.createRequest("other.jar", 4096);
+
+        this.execute(null, parent, other);
+
+        final List<RecordedUpload> uploads = this.server.getAcceptedUploads();
+        assertEquals(4, uploads.size());
+
+        final RecordedUpload parentUpload = this.findUpload("mod.jar");
+        assertEquals(parentUpload.getFileId(), this.service.takeUploadedFile(parent));
+
+        for (UploadRequest child : List.of(sources, javadoc)) {
+
+            final RecordedUpload childUpload = this.findUpload(child.getFile().getName());
+            final JsonObject metadata = JsonParser.parseString(childUpload.getMetadataJson()).getAsJsonObject();
+
+            assertEquals(parentUpload.getFileId(), metadata.get("parentFileID").getAsLong());
+            assertFalse(metadata.has("gameVersionNames"));
+            assertTrue(uploads.indexOf(childUpload) > uploads.indexOf(parentUpload), child.getFile().getName() + " was uploaded before its parent.");
+        }
+
+        assertFalse(JsonParser.parseString(this.findUpload("other.jar").getMetadataJson()).getAsJsonObject().has("parentFileID"));
+    }
+
+    /**
+     * An upload that fails with 503 is retried after the delay requested by the Retry-After header.
+     */
+    @Test
+    void retriesAfterServiceUnavailable() throws IOException {
+
+        final UploadRequest request = this.createRequest("mod.jar", 8192);
+        this.server.failNext(503, 1);
+
+        final long startNanos = System.nanoTime();
+        this.execute(null, request);
+        final long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        final List<RecordedUpload> uploads = this.server.getUploads();
+        assertEquals(2, uploads.size());
+        assertEquals(503, uploads.get(0).getStatus());
+        assertEquals(200, uploads.get(1).getStatus());
+        assertEquals(8192, uploads.get(1).getFileSize());
+        assertTrue(elapsedMillis >= 1000, "The Retry-After header was not honored. The upload finished after " + elapsedMillis + "ms.");
+
+        final UploadMetrics metrics = this.service.takeMetrics(request);
+        assertEquals(2, metrics.getAttempts());
+        assertEquals(UploadMetrics.Outcome.UPLOADED, metrics.getOutcome());
+        assertEquals(uploads.get(1).getFileId(), metrics.getFileId());
+    }
+
+    /**
+     * Files that are already in the publish ledger are not uploaded again, and their existing ID is reused.
+     */
+    @Test
+    void skipsFilesInLedger() throws IOException {
+
+        final File ledger = this.tempDir.resolve("ledger.json").toFile();
+        final UploadRequest first = this.createRequest("mod.jar", 4096);
+        this.createAdditionalRequest(first, "mod-sources.jar", 1024);
+
+        this.execute(ledger, first);
+        assertEquals(2, this.server.getUploads().size());
+        assertTrue(ledger.isFile());
+
+        final long fileId = this.service.takeUploadedFile(first);
+        final UploadRequest second = this.createRequest(first.getFile(), first.getMetadata());
+        final UploadRequest secondChild = this.createAdditionalRequest(second, first.getChildren().get(0).getFile(), first.getChildren().get(0).getMetadata());
+
+        this.execute(ledger, second);
+
+        assertEquals(2, this.server.getUploads().size());
+        assertEquals(fileId, this.service.takeUploadedFile(second));
+        assertEquals(UploadMetrics.Outcome.SKIPPED, this.service.takeMetrics(second).getOutcome());
+        assertEquals(UploadMetrics.Outcome.SKIPPED, this.service.takeMetrics(secondChild).getOutcome());
+    }
+
+    /**
+     * A failed upload does not stop the other top-level files, but the additional files of the failed upload are not
+     * sent. Every failure is reported once all uploads have finished.
+     */
+    @Test
+    void reportsEveryFailedUpload() throws IOException {
+
+        final UploadRequest failed = this.createRequest("failed.jar", 4096);
+        this.createAdditionalRequest(failed, "failed-sources.jar", 1024);
+        final UploadRequest rejected = this.createRequest("rejected.jar", 4096);
+        final UploadRequest published = this.createRequest("published.jar", 4096);
+
+        this.server.failNext(400, null);
+        this.server.failNext(422, null);
+
+        final GradleException exception = assertThrows(GradleException.class, () -> this.execute(null, failed, rejected, published));
+
+        assertEquals(1, exception.getSuppressed().length);
+        assertEquals(List.of("failed.jar", "rejected.jar", "published.jar"), this.server.getUploads().stream().map(RecordedUpload::getFileName).toList());
+        assertEquals(UploadMetrics.Outcome.FAILED, this.service.takeMetrics(failed).getOutcome());
+        assertEquals(UploadMetrics.Outcome.FAILED, this.service.takeMetrics(rejected).getOutcome());
+        assertEquals(UploadMetrics.Outcome.UPLOADED, this.service.takeMetrics(published).getOutcome());
+    }
+
+    /**
+     * Runs the upload work action with one upload in flight at a time, so the order uploads reach the server is
+     * predictable.
+     *
+     * @param ledger   An optional publish ledger file.
+     * @param requests The top-level requests to upload.
+     */
+    private void execute(@Nullable File ledger, UploadRequest... requests) {
+
+        final UploadWorkAction.Parameters parameters = this.project.getObjects().newInstance(UploadWorkAction.Parameters.class);
+        parameters.getUploadService().set(this.service);
+        parameters.getRequests().set(List.of(requests));
+        parameters.getToken().set(TOKEN);
+        parameters.getConnectTimeoutSeconds().set(10L);
+        parameters.getRequestTimeoutSeconds().set(30L);
+        parameters.getPreferHttp2().set(false);
+        parameters.getRetryPolicy().set(new RetryPolicy(3, 10, 0, true, RetryPolicy.DEFAULT_RETRYABLE_CODES));
+        parameters.getChunkSize().set(0L);
+        parameters.getMaxInFlight().set(1);
+        parameters.getLoggerName().set("CurseForgeGradle/test");
+
+        if (ledger != null) {
+
+            parameters.getLedgerFile().set(ledger);
+        }
+
+        new UploadWorkAction() {
+
+            @Override
+            public Parameters getParameters() {
+
+                return parameters;
+            }
+        }.execute();
+    }
+
+    /**
+     * Creates a top-level request for a new file with random contents.
+     *
+     * @param name The name of the file.
+     * @param size The size of the file in bytes.
+     * @return The upload request.
+     */
+    private UploadRequest createRequest(String name, int size) throws IOException {
+
+        final Metadata metadata = new Metadata();
+        metadata.gameVersions = Set.of("1.21");
+        metadata.releaseType = "beta";
+        return this.createRequest(this.createFile(name, size), metadata);
+    }
+
+    /**
+     * Creates a top-level request for an existing file.
+     *
+     * @param file     The file to upload.
+     * @param metadata The metadata of the file.
+     * @return The upload request.
+     */
+    private UploadRequest createRequest(File file, Metadata metadata) {
+
+        final String projectEndpoint = this.server.getEndpoint() + "/api/projects/" + PROJECT_ID;
+        return new UploadRequest(PROJECT_ID, file, projectEndpoint + "/upload-file", projectEndpoint + "/upload-sessions", metadata);
+    }
+
+    /**
+     * Creates an additional file for a request. Like the requests created by the task, additional files do not define
+     * game versions.
+     *
+     * @param parent The request the file belongs to.
+     * @param name   The name of the file.
+     * @param size   The size of the file in bytes.
+     * @return The upload request for the additional file.
+     */
+    private UploadRequest createAdditionalRequest(UploadRequest parent, String name, int size) throws IOException {
+
+        final Metadata metadata = new Metadata();
+        metadata.gameVersions = null;
+        metadata.releaseType = "beta";
+        return this.createAdditionalRequest(parent, this.createFile(name, size), metadata);
+    }
+
+    /**
+     * Creates an additional file for a request from an existing file.
+     *
+     * @param parent   The request the file belongs to.
+     * @param file     The file to upload.
+     * @param metadata The metadata of the file.
+     * @return The upload request for the additional file.
+     */
+    private UploadRequest createAdditionalRequest(UploadRequest parent, File file, Metadata metadata) {
+
+        final UploadRequest child = this.createRequest(file, metadata);
+        parent.addChild(child);
+        return child;
+    }
+
+    /**
+     * Creates a file with random contents.
+     *
+     * @param name The name of the file.
+     * @param size The size of the file in bytes.
+     * @return The created file.
+     */
+    private File createFile(String name, int size) throws IOException {
+
+        final byte[] contents = new byte[size];
+        new Random(name.hashCode()).nextBytes(contents);
+        return Files.write(this.tempDir.resolve(name), contents).toFile();
+    }
+
+    /**
+     * Finds the accepted upload of a file.
+     *
+     * @param fileName The name of the file.
+     * @return The accepted upload.
+     */
+    private RecordedUpload findUpload(String fileName) {
+
+        return this.server.getAcceptedUploads().stream().filter(upload -> fileName.equals(upload.getFileName())).findFirst().orElseThrow(() -> new AssertionError("No upload of " + fileName + " was accepted."));
+    }
+}
@@ -0,0 +1,804 @@
+package net.darkhax.curseforgegradle.testing;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the CurseForge upload API. The server implements the {@code /api/projects/{id}/upload-file} and
+ * {@code /api/game/versions} endpoints and responds with the same JSON bodies as CurseForge. It can simulate latency, limited bandwidth, and
+ * transient failures, and records every request it receives so that concurrency, retry, and streaming behavior can be
+ * verified without network access.
+ * <p>
+ * The server can also implement the resumable upload sessions used for chunked uploads at
+ * {@code /api/projects/{id}/upload-sessions}. CurseForge does not support these, so they are disabled unless
+ * {@link #withResumableUploads()} is called, and the server responds with 404 like CurseForge would.
+ */
+public final class MockCurseForgeServer implements AutoCloseable {
+
+    /**
+     * Matches the upload endpoint and captures the project ID.
+     */
+    private static final Pattern UPLOAD_PATH = Pattern.compile("^/api/projects/(\\d+)/upload-file$");
+
+    /**
+     * Matches the resumable upload endpoints and captures the project ID and the optional session ID.
+     */
+    private static final Pattern SESSION_PATH = Pattern.compile("^/api/projects/(\\d+)/upload-sessions(?:/([^/]+))?$");
+
+    /**
+     * Matches the Content-Range header of a chunk.
+     */
+    private static final Pattern CONTENT_RANGE = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+)$");
+
+    /**
+     * The maximum number of bytes from the start of a request body that are kept to read the metadata part. The file
+     * part is counted but never held in memory.
+     */
+    private static final int MAX_PREAMBLE_BYTES = 1024 * 1024;
+
+    /**
+     * The underlying HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads used to handle requests. Each request gets its own thread so concurrent uploads are not serialized.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The ID given to the next successful upload.
+     */
+    private final AtomicLong nextFileId = new AtomicLong(1000);
+
+    /**
+     * Every upload request received by the server, in the order they were completed.
+     */
+    private final List<RecordedUpload> uploads = new CopyOnWriteArrayList<>();
+
+    /**
+     * Failures that will be returned for the next requests, in order.
+     */
+    private final Queue<Failure> queuedFailures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The delay before the server starts reading each request.
+     */
+    private volatile Duration latency = Duration.ZERO;
+
+    /**
+     * The maximum rate in bytes per second at which each request body is read, or 0 for no limit.
+     */
+    private volatile long bytesPerSecond = 0;
+
+    /**
+     * The chance that a request which has no queued failure fails anyway.
+     */
+    private volatile double failureRate = 0;
+
+    /**
+     * The status used for random failures.
+     */
+    private volatile int randomFailureStatus = 503;
+
+    /**
+     * The game versions returned by the {@code /api/game/versions} endpoint.
+     */
+    private volatile JsonArray gameVersions = new JsonArray();
+
+    /**
+     * The number of requests made to the {@code /api/game/versions} endpoint.
+     */
+    private final AtomicInteger gameVersionRequests = new AtomicInteger();
+
+    /**
+     * Whether resumable upload sessions are supported.
+     */
+    private volatile boolean resumableUploads = false;
+
+    /**
+     * The status used to reject requests to the upload session endpoints while resumable uploads are disabled.
+     */
+    private volatile int unsupportedSessionStatus = 404;
+
+    /**
+     * The number of bytes added to the received count of chunk responses, as a server that lost track of an upload
+     * would report.
+     */
+    private volatile long overReportedBytes = 0;
+
+    /**
+     * The open and completed upload sessions, by ID.
+     */
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * The number of chunk requests received, including ones that were answered with a failure.
+     */
+    private final AtomicInteger chunkRequests = new AtomicInteger();
+
+    private MockCurseForgeServer(HttpServer server, ExecutorService executor) {
+
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a new server on a free port of the loopback interface.
+     *
+     * @return The running server.
+     * @throws IOException If the server could not be started.
+     */
+    public static MockCurseForgeServer start() throws IOException {
+
+        final HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final MockCurseForgeServer mock = new MockCurseForgeServer(httpServer, executor);
+
+        httpServer.createContext("/api/projects/", mock::handleUpload);
+        httpServer.createContext("/api/game/versions", mock::handleGameVersions);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        return mock;
+    }
+
+    /**
+     * Gets the endpoint of the server. This can be used as the apiEndpoint of a publish task.
+     *
+     * @return The endpoint URL.
+     */
+    public String getEndpoint() {
+
+        return "http://" + this.server.getAddress().getHostString() + ":" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Delays every request before it is read.
+     *
+     * @param latency The delay to add.
+     * @return The server.
+     */
+    public MockCurseForgeServer withLatency(Duration latency) {
+
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Limits the rate at which each request body is read.
+     *
+     * @param bytesPerSecond The maximum number of bytes per second, or 0 for no limit.
+     * @return The server.
+     */
+    public MockCurseForgeServer withBandwidth(long bytesPerSecond) {
+
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Makes the next request fail with the given status. Multiple failures can be queued and are returned in order.
+     *
+     * @param status            The HTTP status and error code to respond with.
+     * @param retryAfterSeconds An optional value for the Retry-After header.
+     * @return The server.
+     */
+    public MockCurseForgeServer failNext(int status, Integer retryAfterSeconds) {
+
+        this.queuedFailures.add(new Failure(status, retryAfterSeconds));
+        return this;
+    }
+
+    /**
+     * Makes a fraction of requests fail with the given status.
+     *
+     * @param rate   The chance that a request fails, from 0 to 1.
+     * @param status The HTTP status and error code to respond with.
+     * @return The server.
+     */
+    public MockCurseForgeServer failRandomly(double rate, int status) {
+
+        this.failureRate = rate;
+        this.randomFailureStatus = status;
+        return this;
+    }
+
+    /**
+     * Sets the game versions returned by the {@code /api/game/versions} endpoint. Each version is given a unique ID
+     * and a slug made from its name. The ETag of the response changes whenever the versions are changed.
+     *
+     * @param names The names of the game versions.
+     * @return The server.
+     */
+    public MockCurseForgeServer withGameVersions(String... names) {
+
+        final JsonArray versions = new JsonArray();
+        long id = 1;
+
+        for (String name : names) {
+
+            final JsonObject version = new JsonObject();
+            version.addProperty("id", id++);
+            version.addProperty("gameVersionTypeID", 1);
+            version.addProperty("name", name);
+            version.addProperty("slug", name.toLowerCase().replace(' ', '-'));
+            versions.add(version);
+        }
+
+        this.gameVersions = versions;
+        return this;
+    }
+
+    /**
+     * Enables resumable upload sessions. Queued and random failures also apply to chunk requests. A chunk that fails
+     * keeps the first half of its bytes, as if the connection dropped part of the way through, so clients must ask
+     * for the state of the session to know where to resume.
+     *
+     * @return The server.
+     */
+    public MockCurseForgeServer withResumableUploads() {
+
+        this.resumableUploads = true;
+        return this;
+    }
+
+    /**
+     * Disables resumable upload sessions and rejects requests to their endpoints with the given status. CurseForge
+     * responds with 404, but other servers may respond with 405 or 501 instead.
+     *
+     * @param status The HTTP status and error code to respond with.
+     * @return The server.
+     */
+    public MockCurseForgeServer withoutResumableUploads(int status) {
+
+        this.resumableUploads = false;
+        this.unsupportedSessionStatus = status;
+        return this;
+    }
+
+    /**
+     * Makes chunk responses report more bytes received than the server has, up to the length of the file, so clients
+     * can be tested against a server that has lost track of an upload.
+     *
+     * @param bytes The number of bytes to add to the received count.
+     * @return The server.
+     */
+    public MockCurseForgeServer overReportReceived(long bytes) {
+
+        this.overReportedBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Gets the number of chunk requests received, including ones that were answered with a failure.
+     *
+     * @return The number of chunk requests.
+     */
+    public int getChunkRequests() {
+
+        return this.chunkRequests.get();
+    }
+
+    /**
+     * Gets the number of requests made to the {@code /api/game/versions} endpoint, including ones that were answered
+     * with 304 Not Modified.
+     *
+     * @return The number of game version requests.
+     */
+    public int getGameVersionRequests() {
+
+        return this.gameVersionRequests.get();
+    }
+
+    /**
+     * Gets every upload request received by the server, including ones that were answered with a failure.
+     *
+     * @return An immutable list of recorded uploads.
+     */
+    public List<RecordedUpload> getUploads() {
+
+        return Collections.unmodifiableList(new ArrayList<>(this.uploads));
+    }
+
+    /**
+     * Gets the uploads that were accepted by the server.
+     *
+     * @return An immutable list of accepted uploads.
+     */
+    public List<RecordedUpload> getAcceptedUploads() {
+
+        final List<RecordedUpload> accepted = new ArrayList<>();
+
+        for (RecordedUpload upload : this.uploads) {
+
+            if (upload.getStatus() == 200) {
+
+                accepted.add(upload);
+            }
+        }
+
+        return Collections.unmodifiableList(accepted);
+    }
+
+    @Override
+    public void close() {
+
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Handles a request to the upload endpoint.
+     *
+     * @param exchange The request exchange.
+     * @throws IOException If the response could not be written.
+     */
+    private void handleUpload(HttpExchange exchange) throws IOException {
+
+        try (exchange) {
+
+            final Matcher sessionMatcher = SESSION_PATH.matcher(exchange.getRequestURI().getPath());
+
+            if (sessionMatcher.matches()) {
+
+                this.handleSession(exchange, Long.parseLong(sessionMatcher.group(1)), sessionMatcher.group(2));
+                return;
+            }
+
+            final Matcher matcher = UPLOAD_PATH.matcher(exchange.getRequestURI().getPath());
+
+            if (!matcher.matches()) {
+
+                respondError(exchange, 404, "Not found.", null);
+                return;
+            }
+
+            if (!"POST".equals(exchange.getRequestMethod())) {
+
+                respondError(exchange, 405, "Method not allowed.", null);
+                return;
+            }
+
+            final String token = exchange.getRequestHeaders().getFirst("X-Api-Token");
+
+            if (token == null || token.isEmpty()) {
+
+                respondError(exchange, 401, "An API token is required.", null);
+                return;
+            }
+
+            sleep(this.latency.toMillis());
+
+            final long startNanos = System.nanoTime();
+            final ByteArrayOutputStream preamble = new ByteArrayOutputStream();
+            final long bytesReceived = readBody(exchange.getRequestBody(), preamble);
+            final long readNanos = System.nanoTime() - startNanos;
+
+            Failure failure = this.queuedFailures.poll();
+
+            if (failure == null && this.failureRate > 0 && ThreadLocalRandom.current().nextDouble() < this.failureRate) {
+
+                failure = new Failure(this.randomFailureStatus, null);
+            }
+
+            final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            final Multipart multipart = Multipart.parse(contentType, preamble.toByteArray(), bytesReceived);
+            final int status = failure != null ? failure.status : 200;
+            final long fileId = failure == null ? this.nextFileId.getAndIncrement() : -1;
+
+            this.uploads.add(new RecordedUpload(Long.parseLong(matcher.group(1)), token, exchange.getRequestHeaders().getFirst("Content-Length"), bytesReceived, readNanos, multipart.metadataJson, multipart.fileName, multipart.fileSize, status, fileId));
+
+            if (failure != null) {
+
+                respondError(exchange, failure.status, "Injected failure.", failure.retryAfterSeconds);
+                return;
+            }
+
+            final JsonObject response = new JsonObject();
+            response.addProperty("id", fileId);
+            respond(exchange, 200, response);
+        }
+    }
+
+    /**
+     * Handles a request to the resumable upload endpoints.
+     *
+     * @param exchange  The request exchange.
+     * @param projectId The project ID from the request path.
+     * @param sessionId The session ID from the request path, or null when a session is being started.
+     * @throws IOException If the response could not be written.
+     */
+    private void handleSession(HttpExchange exchange, long projectId, String sessionId) throws IOException {
+
+        if (!this.resumableUploads) {
+
+            respondError(exchange, this.unsupportedSessionStatus, "Upload sessions are not supported.", null);
+            return;
+        }
+
+        final String token = exchange.getRequestHeaders().getFirst("X-Api-Token");
+
+        if (token == null || token.isEmpty()) {
+
+            respondError(exchange, 401, "An API token is required.", null);
+            return;
+        }
+
+        final String method = exchange.getRequestMethod();
+
+        if (sessionId == null) {
+
+            if (!"POST".equals(method)) {
+
+                respondError(exchange, 405, "Method not allowed.", null);
+                return;
+            }
+
+            final String length = exchange.getRequestHeaders().getFirst("X-Upload-Length");
+            final String fileName = exchange.getRequestHeaders().getFirst("X-Upload-File-Name");
+
+            if (length == null || fileName == null) {
+
+                respondError(exchange, 400, "The X-Upload-Length and X-Upload-File-Name headers are required.", null);
+                return;
+            }
+
+            final Session session = new Session(projectId, token, new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), URLDecoder.decode(fileName, StandardCharsets.UTF_8), Long.parseLong(length));
+            final String id = UUID.randomUUID().toString();
+            this.sessions.put(id, session);
+            respond(exchange, 201, session.toJson(id));
+            return;
+        }
+
+        final Session session = this.sessions.get(sessionId);
+
+        if (session == null || session.projectId != projectId) {
+
+            respondError(exchange, 404, "Unknown upload session.", null);
+            return;
+        }
+
+        if ("GET".equals(method)) {
+
+            respond(exchange, 200, session.toJson(null));
+            return;
+        }
+
+        if (!"PUT".equals(method)) {
+
+            respondError(exchange, 405, "Method not allowed.", null);
+            return;
+        }
+
+        this.chunkRequests.incrementAndGet();
+        final Matcher range = CONTENT_RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Content-Range")));
+
+        if (!range.matches() || Long.parseLong(range.group(3)) != session.length) {
+
+            respondError(exchange, 400, "A valid Content-Range header is required.", null);
+            return;
+        }
+
+        sleep(this.latency.toMillis());
+
+        final long start = Long.parseLong(range.group(1));
+        final long startNanos = System.nanoTime();
+        final long bytesReceived = readBody(exchange.getRequestBody(), new ByteArrayOutputStream());
+        final long readNanos = System.nanoTime() - startNanos;
+
+        Failure failure = this.queuedFailures.poll();
+
+        if (failure == null && this.failureRate > 0 && ThreadLocalRandom.current().nextDouble() < this.failureRate) {
+
+            failure = new Failure(this.randomFailureStatus, null);
+        }
+
+        synchronized (session) {
+
+            session.bytesReceived += bytesReceived;
+            session.readNanos += readNanos;
+
+            // Bytes are only acknowledged when they directly follow the bytes that were already received.
+            if (start > session.received) {
+
+                respondError(exchange, 416, "Expected a chunk starting at " + session.received + ".", null);
+                return;
+            }
+
+            final long end = failure != null ? start + bytesReceived / 2 : start + bytesReceived;
+            session.received = Math.max(session.received, Math.min(end, session.length));
+
+            if (failure != null) {
+
+                respondError(exchange, failure.status, "Injected failure.", failure.retryAfterSeconds);
+                return;
+            }
+
+            if (session.received == session.length && session.fileId < 0) {
+
+                session.fileId = this.nextFileId.getAndIncrement();
+                this.uploads.add(new RecordedUpload(projectId, session.token, String.valueOf(session.length), session.bytesReceived, session.readNanos, session.metadataJson, session.fileName, session.length, 200, session.fileId));
+            }
+
+            final JsonObject state = session.toJson(null);
+
+            if (this.overReportedBytes > 0 && session.fileId < 0) {
+
+                state.addProperty("received", Math.min(session.received + this.overReportedBytes, session.length));
+            }
+
+            respond(exchange, 200, state);
+        }
+    }
+
+    /**
+     * Handles a request to the game versions endpoint. Requests with a matching If-None-Match header are answered with
+     * 304 Not Modified.
+     *
+     * @param exchange The request exchange.
+     * @throws IOException If the response could not be written.
+     */
+    private void handleGameVersions(HttpExchange exchange) throws IOException {
+
+        try (exchange) {
+
+            this.gameVersionRequests.incrementAndGet();
+            sleep(this.latency.toMillis());
+
+            final JsonArray versions = this.gameVersions;
+            final String etag = "\"" + Integer.toHexString(versions.hashCode()) + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            final byte[] bytes = versions.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+
+            try (OutputStream output = exchange.getResponseBody()) {
+
+                output.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Reads a request body, applying the bandwidth limit and keeping only the start of the body.
+     *
+     * @param body     The request body.
+     * @param preamble The stream to copy the start of the body to.
+     * @return The total number of bytes read.
+     * @throws IOException If the body could not be read.
+     */
+    private long readBody(InputStream body, ByteArrayOutputStream preamble) throws IOException {
+
+        final byte[] buffer = new byte[8192];
+        final long startNanos = System.nanoTime();
+        long total = 0;
+        int read;
+
+        while ((read = body.read(buffer)) != -1) {
+
+            if (preamble.size() < MAX_PREAMBLE_BYTES) {
+
+                preamble.write(buffer, 0, Math.min(read, MAX_PREAMBLE_BYTES - preamble.size()));
+            }
+
+            total += read;
+
+            final long limit = this.bytesPerSecond;
+
+            if (limit > 0) {
+
+                final long expectedMillis = total * 1000 / limit;
+                final long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+                sleep(expectedMillis - elapsedMillis);
+            }
+        }
+
+        return total;
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message, Integer retryAfterSeconds) throws IOException {
+
+        if (retryAfterSeconds != null) {
+
+            exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+        }
+
+        final JsonObject error = new JsonObject();
+        error.addProperty("errorCode", status);
+        error.addProperty("errorMessage", message);
+        respond(exchange, status, error);
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonObject json) throws IOException {
+
+        final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+
+            output.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+
+        if (millis > 0) {
+
+            try {
+
+                Thread.sleep(millis);
+            }
+
+            catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A failure that will be returned for a request.
+     */
+    private static final class Failure {
+
+        private final int status;
+
+        private final Integer retryAfterSeconds;
+
+        private Failure(int status, Integer retryAfterSeconds) {
+
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    /**
+     * The state of a resumable upload session.
+     */
+    private static final class Session {
+
+        private final long projectId;
+
+        private final String token;
+
+        private final String metadataJson;
+
+        private final String fileName;
+
+        private final long length;
+
+        private long received;
+
+        private long bytesReceived;
+
+        private long readNanos;
+
+        private long fileId = -1;
+
+        private Session(long projectId, String token, String metadataJson, String fileName, long length) {
+
+            this.projectId = projectId;
+            this.token = token;
+            this.metadataJson = metadataJson;
+            this.fileName = fileName;
+            this.length = length;
+        }
+
+        /**
+         * Creates the JSON state of the session.
+         *
+         * @param sessionId The session ID to include, or null to leave it out.
+         * @return The JSON state.
+         */
+        private synchronized JsonObject toJson(String sessionId) {
+
+            final JsonObject json = new JsonObject();
+
+            if (sessionId != null) {
+
+                json.addProperty("sessionId", sessionId);
+            }
+
+            json.addProperty("received", this.received);
+
+            if (this.fileId >= 0) {
+
+                json.addProperty("id", this.fileId);
+            }
+
+            return json;
+        }
+    }
+
+    /**
+     * The parts of a multipart upload body that are recorded by the server.
+     */
+    private static final class Multipart {
+
+        private final String metadataJson;
+
+        private final String fileName;
+
+        private final long fileSize;
+
+        private Multipart(String metadataJson, String fileName, long fileSize) {
+
+            this.metadataJson = metadataJson;
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+        }
+
+        /**
+         * Reads the metadata part and the file part headers from the start of a multipart body. The size of the file is
+         * calculated from the total size of the body, so the file itself does not need to be kept.
+         *
+         * @param contentType The Content-Type header of the request.
+         * @param preamble    The start of the body.
+         * @param totalBytes  The total size of the body.
+         * @return The parsed parts. Values that could not be found are null.
+         */
+        private static Multipart parse(String contentType, byte[] preamble, long totalBytes) {
+
+            if (contentType == null || !contentType.contains("boundary=")) {
+
+                return new Multipart(null, null, -1);
+            }
+
+            final String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            final String text = new String(preamble, StandardCharsets.ISO_8859_1);
+            final String delimiter = "--" + boundary;
+
+            final int metadataHeaders = text.indexOf(delimiter);
+            final int metadataStart = text.indexOf("\r\n\r\n", metadataHeaders) + 4;
+            final int fileHeaders = text.indexOf("\r\n" + delimiter, metadataStart);
+
+            if (metadataHeaders < 0 || metadataStart < 4 || fileHeaders < 0) {
+
+                return new Multipart(null, null, -1);
+            }
+
+            final String metadataJson = new String(preamble, metadataStart, fileHeaders - metadataStart, StandardCharsets.UTF_8);
+            final int fileStart = text.indexOf("\r\n\r\n", fileHeaders + 2) + 4;
+            final Matcher fileName = Pattern.compile("filename=\"([^\"]*)\"").matcher(text.substring(fileHeaders, Math.max(fileHeaders, fileStart)));
+            final long epilogueLength = ("\r\n" + delimiter + "--\r\n").length();
+
+            return new Multipart(metadataJson, fileName.find() ? fileName.group(1) : null, fileStart >= 4 ? totalBytes - fileStart - epilogueLength : -1);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package net.darkhax.curseforgegradle.testing;
+
+/**
+ * An upload request that was received by the {@link MockCurseForgeServer}.
+ */
+public final class RecordedUpload {
+
+    private final long projectId;
+
+    private final String token;
+
+    private final String contentLength;
+
+    private final long bytesReceived;
+
+    private final long readNanos;
+
+    private final String metadataJson;
+
+    private final String fileName;
+
+    private final long fileSize;
+
+    private final int status;
+
+    private final long fileId;
+
+    RecordedUpload(long projectId, String token, String contentLength, long bytesReceived, long readNanos, String metadataJson, String fileName, long fileSize, int status, long fileId) {
+
+        this.projectId = projectId;
+        this.token = token;
+        this.contentLength = contentLength;
+        this.bytesReceived = bytesReceived;
+        this.readNanos = readNanos;
+        this.metadataJson = metadataJson;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.status = status;
+        this.fileId = fileId;
+    }
+
+    /**
+     * Gets the project ID from the request path.
+     *
+     * @return The project ID.
+     */
+    public long getProjectId() {
+
+        return this.projectId;
+    }
+
+    /**
+     * Gets the API token sent with the request.
+     *
+     * @return The API token.
+     */
+    public String getToken() {
+
+        return this.token;
+    }
+
+    /**
+     * Gets the Content-Length header sent with the request.
+     *
+     * @return The Content-Length header, or null if the body was sent with chunked encoding.
+     */
+    public String getContentLength() {
+
+        return this.contentLength;
+    }
+
+    /**
+     * Gets the number of bytes in the request body.
+     *
+     * @return The size of the request body.
+     */
+    public long getBytesReceived() {
+
+        return this.bytesReceived;
+    }
+
+    /**
+     * Gets the time the server spent reading the request body.
+     *
+     * @return The read time in nanoseconds.
+     */
+    public long getReadNanos() {
+
+        return this.readNanos;
+    }
+
+    /**
+     * Gets the JSON sent in the metadata part.
+     *
+     * @return The metadata JSON, or null if it could not be found.
+     */
+    public String getMetadataJson() {
+
+        return this.metadataJson;
+    }
+
+    /**
+     * Gets the name of the uploaded file.
+     *
+     * @return The file name, or null if it could not be found.
+     */
+    public String getFileName() {
+
+        return this.fileName;
+    }
+
+    /**
+     * Gets the size of the uploaded file.
+     *
+     * @return The file size, or -1 if it could not be determined.
+     */
+    public long getFileSize() {
+
+        return this.fileSize;
+    }
+
+    /**
+     * Gets the status the server responded with.
+     *
+     * @return The response status.
+     */
+    public int getStatus() {
+
+        return this.status;
+    }
+
+    /**
+     * Gets the file ID returned for the upload.
+     *
+     * @return The file ID, or -1 if the upload was rejected.
+     */
+    public long getFileId() {
+
+        return this.fileId;
+    }
+}